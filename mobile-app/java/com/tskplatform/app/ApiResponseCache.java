@@ -0,0 +1,521 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Memory and disk cache for allow-listed GET /api requests made by the web app
+ * Only routes in ROUTES are intercepted; each has a freshness TTL and a stale window.
+ * Fresh entries are served without the network, stale ones are served at once while
+ * a conditional request (ETag / Last-Modified) revalidates them in the background.
+ * Identical concurrent requests share a single upstream call. The disk copy is an LRU
+ * bounded by MAX_DISK_SIZE, since keys include the session and pile up across logins
+ */
+public class ApiResponseCache {
+    private static final String TAG = "ApiResponseCache";
+    private static final String CACHE_DIR = "api-cache";
+    private static final int DISK_FORMAT_VERSION = 1;
+    private static final int MEMORY_ENTRIES = 64;
+    private static final int MAX_BODY_SIZE = 256 * 1024;
+    private static final long MAX_DISK_SIZE = 5L * 1024 * 1024; // 5 MB
+
+    // Request headers the native client manages itself
+    private static final Set<String> SKIPPED_REQUEST_HEADERS = new HashSet<>(Arrays.asList(
+        "accept-encoding", "cookie", "connection", "range", "if-none-match", "if-modified-since"
+    ));
+
+    private static final Map<String, RoutePolicy> ROUTES = new HashMap<>();
+
+    static {
+        addRoute("/api/user", 30 * 1000, 60 * 1000);
+        addRoute("/api/wallet/balance", 10 * 1000, 5 * 60 * 1000);
+        addRoute("/api/mining/settings", 5 * 60 * 1000, 24 * 60 * 60 * 1000);
+        addRoute("/api/mining/statistics", 30 * 1000, 10 * 60 * 1000);
+        addRoute("/api/notifications/unread-count", 15 * 1000, 5 * 60 * 1000);
+    }
+
+    private final File cacheDir;
+    private final LruCache<String, Entry> memoryCache = new LruCache<>(MEMORY_ENTRIES);
+    private final ExecutorService revalidationExecutor = Executors.newFixedThreadPool(2);
+    private final Set<String> revalidating = Collections.synchronizedSet(new HashSet<>());
+    private final SingleFlight<Entry> inFlight = new SingleFlight<>();
+
+    // LRU index of the disk entries (file name to size), least recently used first
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<>(64, 0.75f, true);
+    private long diskSize = 0;
+
+    // Entries stored before this time must be revalidated before use (set after mutations)
+    private volatile long expiredBefore = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong offlineHits = new AtomicLong();
+
+    public ApiResponseCache(Context context) {
+        cacheDir = new File(context.getCacheDir(), CACHE_DIR);
+        cacheDir.mkdirs();
+        loadDiskEntries();
+    }
+
+    /**
+     * Rebuild the LRU index from disk, least recently used first
+     */
+    private synchronized void loadDiskEntries() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+                continue;
+            }
+            diskEntries.put(file.getName(), file.length());
+            diskSize += file.length();
+        }
+        trimDisk();
+    }
+
+    /**
+     * Check whether a path is on the allow-list
+     */
+    static boolean isCachedRoute(String path) {
+        return ROUTES.containsKey(path);
+    }
+
+    private static void addRoute(String path, long ttl, long staleWindow) {
+        ROUTES.put(path, new RoutePolicy(ttl, staleWindow));
+    }
+
+    /**
+     * Answer an allow-listed API request from the cache or the native HTTP client
+     *
+     * @return A response, or null to let the WebView handle the request itself
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        Uri url = request.getUrl();
+        String path = url.getPath();
+        if (!"https".equals(url.getScheme()) || !MainActivity.APP_HOST.equals(url.getHost())
+                || path == null || !path.startsWith("/api/")) {
+            return null;
+        }
+
+        // Any mutation may change what the cached routes return
+        if (!"GET".equals(request.getMethod())) {
+            invalidate();
+            return null;
+        }
+
+        RoutePolicy policy = ROUTES.get(path);
+        if (policy == null) {
+            return null;
+        }
+
+        String urlString = url.toString();
+        String key = cacheKey(urlString);
+        Entry entry = get(key);
+        long now = System.currentTimeMillis();
+
+        if (entry != null && entry.storedAt > expiredBefore) {
+            long age = now - entry.storedAt;
+            if (age < policy.ttl) {
+                hits.incrementAndGet();
+                return entry.toResponse("hit");
+            }
+            if (age < policy.ttl + policy.staleWindow) {
+                staleHits.incrementAndGet();
+                revalidateInBackground(key, urlString, request.getRequestHeaders(), entry);
+                return entry.toResponse("stale");
+            }
+        }
+
+        misses.incrementAndGet();
+        try {
+            Entry fresh = fetch(key, urlString, request.getRequestHeaders(), entry);
+            if (fresh.status >= 300 && fresh.status < 400) {
+                // WebResourceResponse cannot carry redirects; let the WebView repeat the request
+                return null;
+            }
+            return fresh.toResponse(entry != null && fresh.body == entry.body ? "revalidated" : "miss");
+        } catch (IOException e) {
+            if (entry != null) {
+                // Offline: anything cached is better than an error
+                offlineHits.incrementAndGet();
+                return entry.toResponse("offline");
+            }
+            Log.w(TAG, "Network error for " + path + ", falling back to WebView", e);
+            return null;
+        }
+    }
+
+    /**
+     * Fetch an allow-listed route ahead of the page so its first request is a cache hit
+     *
+     * @return The fresh cached entry or the fetched response
+     */
+    Entry prefetch(String url) throws IOException {
+        String key = cacheKey(url);
+        Entry cached = get(key);
+        RoutePolicy policy = ROUTES.get(Uri.parse(url).getPath());
+        if (cached != null && policy != null && cached.storedAt > expiredBefore
+                && System.currentTimeMillis() - cached.storedAt < policy.ttl) {
+            return cached;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "application/json");
+        return fetch(key, url, headers, cached);
+    }
+
+    /**
+     * Fetch a route from the server, joining an identical request that is already in flight
+     *
+     * @return The stored entry (refreshed on 304), or the new response
+     */
+    Entry fetch(String key, String url, Map<String, String> requestHeaders, Entry cached) throws IOException {
+        return inFlight.execute(key, () -> fetchUpstream(key, url, requestHeaders, cached));
+    }
+
+    /**
+     * Make the upstream call, sending a conditional request if we have an entry
+     */
+    private Entry fetchUpstream(String key, String url, Map<String, String> requestHeaders, Entry cached) throws IOException {
+        // Entries are dated from the request, so one that raced a mutation counts as expired
+        long requestedAt = System.currentTimeMillis();
+        Request.Builder builder = new Request.Builder().url(url);
+        if (requestHeaders != null) {
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                if (!SKIPPED_REQUEST_HEADERS.contains(header.getKey().toLowerCase())) {
+                    builder.header(header.getKey(), header.getValue());
+                }
+            }
+        }
+        NativeSession.applyTo(builder, url);
+
+        if (cached != null) {
+            if (cached.etag != null) {
+                builder.header("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified != null) {
+                builder.header("If-Modified-Since", cached.lastModified);
+            }
+        }
+
+        try (Response response = TSKPlatformApp.getInstance().getHttpClient().newCall(builder.build()).execute()) {
+            NativeSession.storeCookies(response);
+
+            if (response.code() == 304 && cached != null) {
+                notModified.incrementAndGet();
+                Entry refreshed = cached.withStoredAt(requestedAt);
+                put(key, refreshed);
+                return refreshed;
+            }
+
+            byte[] body = response.body() != null ? response.body().bytes() : new byte[0];
+            Entry entry = new Entry(
+                response.code(),
+                response.header("Content-Type", "application/json"),
+                response.header("ETag"),
+                response.header("Last-Modified"),
+                requestedAt,
+                body
+            );
+
+            String cacheControl = response.header("Cache-Control", "");
+            if (response.code() == 200 && body.length <= MAX_BODY_SIZE && !cacheControl.contains("no-store")) {
+                put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Revalidate a stale entry without blocking the page
+     */
+    private void revalidateInBackground(String key, String url, Map<String, String> requestHeaders, Entry cached) {
+        if (!revalidating.add(key)) {
+            return;
+        }
+
+        revalidationExecutor.execute(() -> {
+            try {
+                fetch(key, url, requestHeaders, cached);
+            } catch (IOException e) {
+                Log.d(TAG, "Background revalidation failed for " + url);
+            } finally {
+                revalidating.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Cache key: the URL plus a hash of the session cookies so users never share entries
+     */
+    String cacheKey(String url) {
+        String cookies = NativeSession.getCookies(url);
+        return url + "|" + (cookies != null ? sha1(cookies) : "anonymous");
+    }
+
+    private Entry get(String key) {
+        Entry entry = memoryCache.get(key);
+        if (entry != null) {
+            return entry;
+        }
+
+        File file = new File(cacheDir, sha1(key));
+        if (!touch(file.getName())) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != DISK_FORMAT_VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+            entry = Entry.read(in);
+            memoryCache.put(key, entry);
+            return entry;
+        } catch (IOException e) {
+            removeDiskEntry(file.getName());
+            return null;
+        }
+    }
+
+    void put(String key, Entry entry) {
+        memoryCache.put(key, entry);
+
+        File file = new File(cacheDir, sha1(key));
+        File temp = new File(cacheDir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeInt(DISK_FORMAT_VERSION);
+            out.writeUTF(key);
+            entry.write(out);
+        } catch (IOException e) {
+            Log.w(TAG, "Error writing API cache entry", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        putDiskEntry(file.getName(), file.length());
+    }
+
+    /**
+     * Mark a disk entry as recently used
+     *
+     * @return true if the entry is on disk
+     */
+    private synchronized boolean touch(String name) {
+        if (diskEntries.get(name) == null) {
+            return false;
+        }
+        new File(cacheDir, name).setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    private synchronized void putDiskEntry(String name, long size) {
+        Long previous = diskEntries.put(name, size);
+        if (previous != null) {
+            diskSize -= previous;
+        }
+        diskSize += size;
+        trimDisk();
+    }
+
+    private synchronized void removeDiskEntry(String name) {
+        Long size = diskEntries.remove(name);
+        if (size != null) {
+            diskSize -= size;
+        }
+        new File(cacheDir, name).delete();
+    }
+
+    /**
+     * Delete least recently used disk entries until the cache fits MAX_DISK_SIZE
+     * (they stay in memory until the memory LRU drops them)
+     */
+    private synchronized void trimDisk() {
+        Iterator<Map.Entry<String, Long>> iterator = diskEntries.entrySet().iterator();
+        while (diskSize > MAX_DISK_SIZE && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            new File(cacheDir, eldest.getKey()).delete();
+            diskSize -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Make every cached entry revalidate before its next use (after a native mutation)
+     */
+    public void invalidate() {
+        expiredBefore = System.currentTimeMillis();
+    }
+
+    /**
+     * Drop all cached responses (used on logout)
+     */
+    public void clear() {
+        memoryCache.evictAll();
+        synchronized (this) {
+            File[] files = cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            diskEntries.clear();
+            diskSize = 0;
+        }
+    }
+
+    /**
+     * Get hit/miss counters
+     */
+    public JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("hits", hits.get());
+            stats.put("staleHits", staleHits.get());
+            stats.put("misses", misses.get());
+            stats.put("notModified", notModified.get());
+            stats.put("offlineHits", offlineHits.get());
+            stats.put("upstreamCalls", inFlight.getExecutedCount());
+            stats.put("coalesced", inFlight.getCollapsedCount());
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building API cache stats", e);
+        }
+        return stats;
+    }
+
+    static String sha1(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(value.getBytes("UTF-8"))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            return String.valueOf(value.hashCode());
+        }
+    }
+
+    /**
+     * Freshness policy for an allow-listed route
+     */
+    private static class RoutePolicy {
+        final long ttl;
+        final long staleWindow;
+
+        RoutePolicy(long ttl, long staleWindow) {
+            this.ttl = ttl;
+            this.staleWindow = staleWindow;
+        }
+    }
+
+    /**
+     * A cached API response
+     */
+    static class Entry {
+        final int status;
+        final String contentType;
+        final String etag;
+        final String lastModified;
+        final long storedAt;
+        final byte[] body;
+
+        Entry(int status, String contentType, String etag, String lastModified, long storedAt, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+            this.body = body;
+        }
+
+        Entry withStoredAt(long time) {
+            return new Entry(status, contentType, etag, lastModified, time, body);
+        }
+
+        WebResourceResponse toResponse(String cacheStatus) {
+            String mimeType = contentType;
+            String encoding = "UTF-8";
+            int separator = contentType.indexOf(';');
+            if (separator >= 0) {
+                mimeType = contentType.substring(0, separator).trim();
+                int charset = contentType.indexOf("charset=");
+                if (charset >= 0) {
+                    encoding = contentType.substring(charset + 8).trim();
+                }
+            }
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Content-Type", contentType);
+            headers.put("Cache-Control", "no-cache");
+            headers.put("X-TSK-Cache", cacheStatus);
+            if (etag != null) {
+                headers.put("ETag", etag);
+            }
+
+            String reason = status == 200 ? "OK" : "Status " + status;
+            return new WebResourceResponse(mimeType, encoding, status, reason, headers, new ByteArrayInputStream(body));
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(status);
+            out.writeUTF(contentType);
+            out.writeUTF(etag != null ? etag : "");
+            out.writeUTF(lastModified != null ? lastModified : "");
+            out.writeLong(storedAt);
+            out.writeInt(body.length);
+            out.write(body);
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            int status = in.readInt();
+            String contentType = in.readUTF();
+            String etag = in.readUTF();
+            String lastModified = in.readUTF();
+            long storedAt = in.readLong();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(status, contentType, etag.isEmpty() ? null : etag,
+                lastModified.isEmpty() ? null : lastModified, storedAt, body);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves the bundled web app shell (index.html, Vite assets, icons) to the WebView
+ * The shell is packed into the APK under assets/app-shell by scripts/build-android-shell.js
+ * and answered locally for the app origin, so the SPA opens without the network.
+ * The HTML document is served stale-while-revalidate: the local copy is returned at once
+ * and AppShellUpdater fetches newer bundle versions in the background
+ */
+public class AppShell {
+    private static final String TAG = "AppShell";
+    static final String ASSET_DIR = "app-shell";
+    static final String MANIFEST_FILE = "app-shell-manifest.json"; // Not manifest.json, which is the web app's own
+    private static final String INDEX_FILE = "index.html";
+    private static final long REVALIDATE_INTERVAL = 15 * 60 * 1000; // 15 minutes
+
+    // The routes of client/src/App.tsx; anything else (/download, /download-page, the
+    // *-test pages) is rendered by the server and loaded from the network
+    private static final Set<String> CLIENT_ROUTES = new HashSet<>(Arrays.asList(
+        "/", "/mining", "/marketplace", "/referrals", "/wallet", "/premium", "/advertising",
+        "/tokens", "/settings", "/whitepapers", "/admin", "/admin/settings", "/admin/ai-settings",
+        "/chat", "/notifications", "/android-app", "/test-upload", "/auth", "/login",
+        "/direct-login", "/forgot-password", "/reset-password", "/terms", "/login-test",
+        "/wallet-debug", "/mobile-wallet"
+    ));
+
+    private final Context context;
+    private final AppShellUpdater updater;
+    private final Manifest active;
+    private volatile long lastRevalidation = 0;
+
+    public AppShell(Context context) {
+        this.context = context.getApplicationContext();
+        this.updater = new AppShellUpdater(this.context);
+
+        // Use a downloaded version if it is newer than the one in the APK
+        Manifest bundled = loadBundledManifest();
+        Manifest downloaded = updater.loadInstalledManifest();
+        if (downloaded != null && (bundled == null || downloaded.createdAt > bundled.createdAt)) {
+            active = downloaded;
+        } else {
+            active = bundled;
+        }
+
+        if (active != null) {
+            Log.d(TAG, "Serving app shell " + active.version + (active.dir != null ? " (downloaded)" : " (bundled)"));
+            updater.removeStaleVersions(active);
+        } else {
+            Log.w(TAG, "No bundled app shell, loading the web app from the network");
+        }
+    }
+
+    /**
+     * Answer a WebView request from the local app shell
+     *
+     * @return A local response, or null to let the WebView load it from the network
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        Manifest manifest = active;
+        if (manifest == null || !"GET".equals(request.getMethod())) {
+            return null;
+        }
+
+        Uri url = request.getUrl();
+        if (!"https".equals(url.getScheme()) || !MainActivity.APP_HOST.equals(url.getHost())) {
+            return null;
+        }
+
+        String path = url.getPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+        if (path.startsWith("/api/")) {
+            return null;
+        }
+
+        String file = path.substring(1);
+        if (manifest.files.containsKey(file) && !file.equals(INDEX_FILE)) {
+            return serve(manifest, file);
+        }
+
+        // Navigations to the document or a client-side route get the SPA shell
+        if (request.isForMainFrame() && (file.equals(INDEX_FILE) || isClientRoute(path))) {
+            revalidate(manifest);
+            return serve(manifest, INDEX_FILE);
+        }
+
+        return null;
+    }
+
+    /**
+     * Check whether a path is one of the SPA's own routes
+     */
+    private static boolean isClientRoute(String path) {
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return CLIENT_ROUTES.contains(path);
+    }
+
+    /**
+     * Check for a newer bundle version in the background (at most every REVALIDATE_INTERVAL)
+     */
+    private void revalidate(Manifest manifest) {
+        long now = System.currentTimeMillis();
+        if (now - lastRevalidation < REVALIDATE_INTERVAL) {
+            return;
+        }
+        lastRevalidation = now;
+        updater.checkForUpdate(manifest);
+    }
+
+    /**
+     * Build a response for a shell file
+     */
+    private WebResourceResponse serve(Manifest manifest, String file) {
+        try {
+            InputStream in = open(context, manifest, file);
+
+            Map<String, String> headers = new HashMap<>();
+            if (file.equals(INDEX_FILE)) {
+                headers.put("Cache-Control", "no-cache");
+            } else if (file.startsWith("assets/")) {
+                // Vite file names are content hashed
+                headers.put("Cache-Control", "public, max-age=31536000, immutable");
+            } else {
+                headers.put("Cache-Control", "public, max-age=86400");
+            }
+
+            return new WebResourceResponse(getMimeType(file), "UTF-8", 200, "OK", headers, in);
+        } catch (IOException e) {
+            Log.e(TAG, "Error serving app shell file: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Open a file of the given shell version
+     */
+    static InputStream open(Context context, Manifest manifest, String file) throws IOException {
+        if (manifest.dir != null) {
+            return new FileInputStream(new File(manifest.dir, file));
+        }
+        return context.getAssets().open(ASSET_DIR + "/" + file);
+    }
+
+    /**
+     * Load the manifest of the shell bundled in the APK
+     */
+    private Manifest loadBundledManifest() {
+        try (InputStream in = context.getAssets().open(ASSET_DIR + "/" + MANIFEST_FILE)) {
+            return Manifest.parse(readFully(in), null);
+        } catch (IOException | JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the MIME type for a shell file (module scripts need a JavaScript MIME type)
+     */
+    static String getMimeType(String file) {
+        String extension = MimeTypeMap.getFileExtensionFromUrl(file).toLowerCase();
+        switch (extension) {
+            case "html":
+                return "text/html";
+            case "js":
+            case "mjs":
+                return "text/javascript";
+            case "css":
+                return "text/css";
+            case "json":
+                return "application/json";
+            case "webmanifest":
+                return "application/manifest+json";
+            case "svg":
+                return "image/svg+xml";
+            case "woff2":
+                return "font/woff2";
+            default:
+                String mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
+                return mimeType != null ? mimeType : "application/octet-stream";
+        }
+    }
+
+    static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * A versioned app shell: file path to SHA-256 hash
+     */
+    static class Manifest {
+        final String version;
+        final long createdAt;
+        final Map<String, String> files;
+        final File dir; // null when served from APK assets
+        final String json;
+
+        private Manifest(String version, long createdAt, Map<String, String> files, File dir, String json) {
+            this.version = version;
+            this.createdAt = createdAt;
+            this.files = files;
+            this.dir = dir;
+            this.json = json;
+        }
+
+        static Manifest parse(String json, File dir) throws JSONException {
+            JSONObject object = new JSONObject(json);
+            JSONObject filesObject = object.getJSONObject("files");
+
+            Map<String, String> files = new HashMap<>();
+            Iterator<String> keys = filesObject.keys();
+            while (keys.hasNext()) {
+                String file = keys.next();
+                files.put(file, filesObject.getString(file));
+            }
+
+            return new Manifest(object.getString("version"), object.getLong("createdAt"), files, dir, json);
+        }
+    }
+}
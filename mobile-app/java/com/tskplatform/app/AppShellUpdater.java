@@ -0,0 +1,230 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Downloads newer versions of the app shell in the background
+ * Only files whose hash changed are fetched; unchanged files are copied from the
+ * version currently in use. A new version is switched in on the next cold start
+ */
+public class AppShellUpdater {
+    private static final String TAG = "AppShellUpdater";
+    private static final String REMOTE_MANIFEST_URL = MainActivity.WEB_APP_URL + AppShell.ASSET_DIR + "/" + AppShell.MANIFEST_FILE;
+    private static final String PREFERENCES_NAME = "tsk_app_shell";
+    private static final String KEY_INSTALLED_VERSION = "installed_version";
+    private static final String KEY_MANIFEST_ETAG = "manifest_etag";
+
+    private final Context context;
+    private final File shellRoot;
+    private final SharedPreferences preferences;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean updating = new AtomicBoolean(false);
+
+    public AppShellUpdater(Context context) {
+        this.context = context.getApplicationContext();
+        this.shellRoot = new File(this.context.getFilesDir(), AppShell.ASSET_DIR);
+        this.preferences = this.context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Load the manifest of the last downloaded version, if any
+     */
+    AppShell.Manifest loadInstalledManifest() {
+        String version = preferences.getString(KEY_INSTALLED_VERSION, null);
+        if (version == null) {
+            return null;
+        }
+
+        File dir = new File(shellRoot, version);
+        try (InputStream in = new FileInputStream(new File(dir, AppShell.MANIFEST_FILE))) {
+            return AppShell.Manifest.parse(AppShell.readFully(in), dir);
+        } catch (Exception e) {
+            Log.w(TAG, "Installed app shell " + version + " is unreadable, ignoring it", e);
+            preferences.edit().remove(KEY_INSTALLED_VERSION).apply();
+            return null;
+        }
+    }
+
+    /**
+     * Delete downloaded versions other than the one in use and the latest installed one
+     */
+    void removeStaleVersions(final AppShell.Manifest active) {
+        executor.execute(() -> {
+            File[] dirs = shellRoot.listFiles();
+            if (dirs == null) {
+                return;
+            }
+
+            String installed = preferences.getString(KEY_INSTALLED_VERSION, null);
+            for (File dir : dirs) {
+                if (dir.getName().equals(active.version) || dir.getName().equals(installed)) {
+                    continue;
+                }
+                deleteRecursively(dir);
+            }
+        });
+    }
+
+    /**
+     * Check the server for a newer shell version and download its changed files
+     *
+     * @param current The version currently being served
+     */
+    void checkForUpdate(final AppShell.Manifest current) {
+        if (!updating.compareAndSet(false, true)) {
+            return;
+        }
+
+        executor.execute(() -> {
+            try {
+                update(current);
+            } catch (Exception e) {
+                Log.w(TAG, "App shell update failed", e);
+            } finally {
+                updating.set(false);
+            }
+        });
+    }
+
+    private void update(AppShell.Manifest current) throws Exception {
+        Request.Builder requestBuilder = new Request.Builder().url(REMOTE_MANIFEST_URL);
+        String etag = preferences.getString(KEY_MANIFEST_ETAG, null);
+        if (etag != null) {
+            requestBuilder.header("If-None-Match", etag);
+        }
+
+        AppShell.Manifest remote;
+        String remoteEtag;
+        try (Response response = TSKPlatformApp.getInstance().getHttpClient().newCall(requestBuilder.build()).execute()) {
+            if (response.code() == 304) {
+                Log.d(TAG, "App shell is up to date");
+                return;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                Log.w(TAG, "Failed to fetch app shell manifest: " + response.code());
+                return;
+            }
+            remote = AppShell.Manifest.parse(response.body().string(), null);
+            remoteEtag = response.header("ETag");
+        }
+
+        if (remote.createdAt <= current.createdAt || remote.version.equals(preferences.getString(KEY_INSTALLED_VERSION, null))) {
+            preferences.edit().putString(KEY_MANIFEST_ETAG, remoteEtag).apply();
+            return;
+        }
+
+        // Assemble the new version in a staging directory
+        File staging = new File(shellRoot, remote.version + ".tmp");
+        deleteRecursively(staging);
+        int downloaded = 0;
+
+        for (Map.Entry<String, String> entry : remote.files.entrySet()) {
+            String file = entry.getKey();
+            String hash = entry.getValue();
+            File target = new File(staging, file);
+            if (!target.getCanonicalPath().startsWith(staging.getCanonicalPath() + File.separator)) {
+                throw new IOException("Invalid app shell path: " + file);
+            }
+            target.getParentFile().mkdirs();
+
+            if (hash.equals(current.files.get(file))) {
+                try (InputStream in = AppShell.open(context, current, file)) {
+                    copy(in, target);
+                }
+            } else {
+                download(file, target);
+                downloaded++;
+            }
+
+            if (!hash.equals(sha256(target))) {
+                deleteRecursively(staging);
+                throw new IOException("Hash mismatch for app shell file: " + file);
+            }
+        }
+
+        try (OutputStream out = new FileOutputStream(new File(staging, AppShell.MANIFEST_FILE))) {
+            out.write(remote.json.getBytes("UTF-8"));
+        }
+
+        File installed = new File(shellRoot, remote.version);
+        deleteRecursively(installed);
+        if (!staging.renameTo(installed)) {
+            deleteRecursively(staging);
+            throw new IOException("Could not install app shell " + remote.version);
+        }
+
+        // Only remember the ETag once installed, so a failed update is retried
+        preferences.edit()
+            .putString(KEY_INSTALLED_VERSION, remote.version)
+            .putString(KEY_MANIFEST_ETAG, remoteEtag)
+            .commit();
+        Log.d(TAG, "Installed app shell " + remote.version + ", downloaded " + downloaded + " of " + remote.files.size() + " files");
+    }
+
+    private void download(String file, File target) throws IOException {
+        Request request = new Request.Builder().url(MainActivity.WEB_APP_URL + file).build();
+        try (Response response = TSKPlatformApp.getInstance().getHttpClient().newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Failed to download app shell file " + file + ": " + response.code());
+            }
+            copy(response.body().byteStream(), target);
+        }
+    }
+
+    private static void copy(InputStream in, File target) throws IOException {
+        try (OutputStream out = new FileOutputStream(target)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private static String sha256(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,222 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Content-addressed disk cache for the hashed Vite assets (/assets/name-[hash].ext)
+ * Because the file name changes whenever the content does, entries never need
+ * revalidation. The cache is bounded by an LRU disk budget and hits are streamed
+ * straight from a FileChannel
+ */
+public class AssetCache {
+    private static final String TAG = "AssetCache";
+    private static final String CACHE_DIR = "asset-cache";
+    private static final long MAX_CACHE_SIZE = 50L * 1024 * 1024; // 50 MB
+
+    // Vite emits assets as /assets/<name>-<hash>.<ext>
+    private static final Pattern HASHED_ASSET = Pattern.compile("^/assets/[\\w.-]+-[\\w-]{8,}\\.[a-z0-9]+$");
+
+    private final File cacheDir;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalSize = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    public AssetCache(Context context) {
+        cacheDir = new File(context.getCacheDir(), CACHE_DIR);
+        cacheDir.mkdirs();
+        loadEntries();
+    }
+
+    /**
+     * Rebuild the LRU index from disk, least recently used first
+     */
+    private synchronized void loadEntries() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+                continue;
+            }
+            entries.put(file.getName(), file.length());
+            totalSize += file.length();
+        }
+        trimToSize();
+    }
+
+    /**
+     * Answer a hashed asset request from the cache, fetching and storing it on a miss
+     *
+     * @return A cached response, or null to let the WebView load it itself
+     */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+
+        Uri url = request.getUrl();
+        String path = url.getPath();
+        if (!"https".equals(url.getScheme()) || !MainActivity.APP_HOST.equals(url.getHost())
+                || path == null || !HASHED_ASSET.matcher(path).matches()) {
+            return null;
+        }
+
+        String key = path.substring(path.lastIndexOf('/') + 1);
+        File file = new File(cacheDir, key);
+
+        if (touch(key)) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            if (!fetch(url.toString(), key, file)) {
+                return null;
+            }
+        }
+
+        return serve(key, file);
+    }
+
+    /**
+     * Mark an entry as recently used
+     *
+     * @return true if the entry is cached
+     */
+    private synchronized boolean touch(String key) {
+        if (entries.get(key) == null) {
+            return false;
+        }
+        new File(cacheDir, key).setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Download an asset into the cache
+     */
+    private boolean fetch(String url, String key, File file) {
+        File temp = new File(cacheDir, key + "." + Thread.currentThread().getId() + ".tmp");
+        Request request = new Request.Builder().url(url).build();
+
+        try (Response response = TSKPlatformApp.getInstance().getHttpClient().newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                Log.w(TAG, "Failed to fetch asset " + key + ": " + response.code());
+                return false;
+            }
+
+            try (InputStream in = response.body().byteStream(); OutputStream out = new FileOutputStream(temp)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return file.exists();
+            }
+            put(key, file.length());
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Error fetching asset " + key, e);
+            temp.delete();
+            return false;
+        }
+    }
+
+    private synchronized void put(String key, long size) {
+        Long previous = entries.put(key, size);
+        if (previous != null) {
+            totalSize -= previous;
+        }
+        totalSize += size;
+        trimToSize();
+    }
+
+    /**
+     * Evict least recently used entries until the cache fits its disk budget
+     */
+    private synchronized void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalSize > MAX_CACHE_SIZE && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            new File(cacheDir, eldest.getKey()).delete();
+            totalSize -= eldest.getValue();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stream a cached file to the WebView through its FileChannel
+     */
+    private WebResourceResponse serve(String key, File file) {
+        try {
+            FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+            bytesServed.addAndGet(channel.size());
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", "public, max-age=31536000, immutable");
+            headers.put("Content-Length", String.valueOf(channel.size()));
+
+            return new WebResourceResponse(AppShell.getMimeType(key), "UTF-8", 200, "OK", headers,
+                Channels.newInputStream(channel));
+        } catch (IOException e) {
+            // Evicted between lookup and open
+            Log.w(TAG, "Error opening cached asset " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Get hit/miss counters and disk usage
+     */
+    public synchronized JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("hits", hits.get());
+            stats.put("misses", misses.get());
+            stats.put("evictions", evictions.get());
+            stats.put("bytesServed", bytesServed.get());
+            stats.put("entries", entries.size());
+            stats.put("sizeBytes", totalSize);
+            stats.put("maxSizeBytes", MAX_CACHE_SIZE);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building asset cache stats", e);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,292 @@
+package com.tskplatform.app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous, promise-based JavaScript bridge
+ * JS posts a request with an ID through AndroidAsync.postRequest(); the call runs on a
+ * bounded, prioritized worker pool instead of the single JavaBridge thread, and results
+ * are delivered back in one batch per frame to resolve the matching JS promises.
+ * Calls time out individually and are cancelled when the page navigates away
+ *
+ * From JavaScript: TSKBridge.call('getDeviceInfo', [], { priority: 'high', timeoutMs: 2000 })
+ */
+public class AsyncBridge {
+    private static final String TAG = "AsyncBridge";
+    private static final String ALLOWED_ORIGIN = "https://" + MainActivity.APP_HOST;
+    private static final int CORE_THREADS = 2;
+    private static final int MAX_PENDING = 64;
+    private static final long DEFAULT_TIMEOUT = 10000;
+
+    private static final Map<String, Integer> PRIORITIES = new HashMap<>();
+
+    static {
+        PRIORITIES.put("high", 0);
+        PRIORITIES.put("normal", 1);
+        PRIORITIES.put("low", 2);
+    }
+
+    // Defines window.TSKBridge on top of the AndroidAsync interface
+    private static final String JS_SHIM =
+        "(function() {" +
+        "  if (window.TSKBridge || !window.AndroidAsync) return;" +
+        "  var pending = {}, nextId = 1;" +
+        "  window.TSKBridge = {" +
+        "    call: function(method, args, options) {" +
+        "      options = options || {};" +
+        "      var id = String(nextId++);" +
+        "      return new Promise(function(resolve, reject) {" +
+        "        pending[id] = { resolve: resolve, reject: reject };" +
+        "        if (options.signal) {" +
+        "          options.signal.addEventListener('abort', function() {" +
+        "            if (pending[id]) { delete pending[id]; AndroidAsync.cancel(id); reject(new Error('cancelled')); }" +
+        "          });" +
+        "        }" +
+        "        AndroidAsync.postRequest(JSON.stringify({ id: id, method: method, args: args || []," +
+        "          priority: options.priority || 'normal', timeoutMs: options.timeoutMs || 0 }));" +
+        "      });" +
+        "    }," +
+        "    __resolve: function(results) {" +
+        "      results.forEach(function(r) {" +
+        "        var p = pending[r.id];" +
+        "        if (!p) return;" +
+        "        delete pending[r.id];" +
+        "        if (r.error) { p.reject(new Error(r.error)); } else { p.resolve(r.result); }" +
+        "      });" +
+        "    }" +
+        "  };" +
+        "})();";
+
+    /**
+     * A native method callable through the async bridge
+     */
+    public interface Method {
+        Object invoke(JSONArray args) throws Exception;
+    }
+
+    private final WebView webView;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Method> methods = new ConcurrentHashMap<>();
+    private final Map<String, Future<?>> pending = new ConcurrentHashMap<>(); // Keyed by generation and id
+    private final ConcurrentLinkedQueue<JSONObject> results = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+    private boolean flushScheduled = false;
+    private boolean scriptInstalled = false;
+    private volatile long generation = 0;
+
+    public AsyncBridge(WebView webView) {
+        this.webView = webView;
+
+        // PriorityBlockingQueue is unbounded, so only core threads ever run; MAX_PENDING bounds the queue
+        this.executor = new ThreadPoolExecutor(CORE_THREADS, CORE_THREADS, 30, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Register the JS shim as a document-start script (main thread, before loading the page)
+     */
+    public void install() {
+        webView.addJavascriptInterface(this, "AndroidAsync");
+        if (WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+            WebViewCompat.addDocumentStartJavaScript(webView, JS_SHIM, Collections.singleton(ALLOWED_ORIGIN));
+            scriptInstalled = true;
+        }
+    }
+
+    /**
+     * Register a method callable from JavaScript
+     */
+    public void register(String name, Method method) {
+        methods.put(name, method);
+    }
+
+    /**
+     * Cancel everything in flight when the page navigates away (main thread)
+     */
+    public void onPageStarted() {
+        generation++;
+        for (Future<?> future : pending.values()) {
+            future.cancel(true);
+        }
+        pending.clear();
+        results.clear();
+
+        if (!scriptInstalled) {
+            webView.evaluateJavascript(JS_SHIM, null);
+        }
+    }
+
+    /**
+     * Queue a call (called from JavaScript)
+     *
+     * @param requestJson {id, method, args, priority, timeoutMs}
+     */
+    @JavascriptInterface
+    public void postRequest(String requestJson) {
+        final String id;
+        final String methodName;
+        final JSONArray args;
+        final int priority;
+        final long timeout;
+        try {
+            JSONObject request = new JSONObject(requestJson);
+            id = request.getString("id");
+            methodName = request.getString("method");
+            args = request.optJSONArray("args") != null ? request.optJSONArray("args") : new JSONArray();
+            Integer priorityValue = PRIORITIES.get(request.optString("priority", "normal"));
+            priority = priorityValue != null ? priorityValue : 1;
+            long requestedTimeout = request.optLong("timeoutMs", 0);
+            timeout = requestedTimeout > 0 ? requestedTimeout : DEFAULT_TIMEOUT;
+        } catch (JSONException e) {
+            Log.e(TAG, "Malformed bridge request: " + requestJson, e);
+            return;
+        }
+
+        final Method method = methods.get(methodName);
+        if (method == null) {
+            deliver(id, null, "Unknown method: " + methodName, generation);
+            return;
+        }
+        if (pending.size() >= MAX_PENDING) {
+            deliver(id, null, "Bridge busy", generation);
+            return;
+        }
+
+        // Page scripts restart their ids at 1, so a call left running by the previous page
+        // must not be able to settle the new page's call with the same id
+        final long callGeneration = generation;
+        final String key = pendingKey(callGeneration, id);
+        Call call = new Call(priority, sequence.getAndIncrement(), () -> {
+            try {
+                Object result = method.invoke(args);
+                if (pending.remove(key) != null) {
+                    deliver(id, result, null, callGeneration);
+                }
+            } catch (Exception e) {
+                if (pending.remove(key) != null) {
+                    Log.w(TAG, "Bridge call " + methodName + " failed", e);
+                    deliver(id, null, e.getMessage() != null ? e.getMessage() : e.toString(), callGeneration);
+                }
+            }
+        });
+
+        pending.put(key, call);
+        executor.execute(call);
+
+        mainHandler.postDelayed(() -> {
+            if (pending.remove(key, call)) {
+                call.cancel(true);
+                deliver(id, null, "Timed out after " + timeout + " ms", callGeneration);
+            }
+        }, timeout);
+    }
+
+    /**
+     * Cancel a call (called from JavaScript, e.g. through an AbortSignal)
+     */
+    @JavascriptInterface
+    public void cancel(String id) {
+        Future<?> future = pending.remove(pendingKey(generation, id));
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    private static String pendingKey(long callGeneration, String id) {
+        return callGeneration + ":" + id;
+    }
+
+    /**
+     * Queue a result and schedule a flush on the next frame
+     */
+    private void deliver(String id, Object result, String error, long callGeneration) {
+        if (callGeneration != generation) {
+            // The page that made the call is gone
+            return;
+        }
+
+        JSONObject message = new JSONObject();
+        try {
+            message.put("id", id);
+            if (error != null) {
+                message.put("error", error);
+            } else {
+                message.put("result", result != null ? result : JSONObject.NULL);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error encoding bridge result", e);
+            return;
+        }
+        results.add(message);
+
+        mainHandler.post(() -> {
+            if (!flushScheduled) {
+                flushScheduled = true;
+                Choreographer.getInstance().postFrameCallback(frameTimeNanos -> flush());
+            }
+        });
+    }
+
+    /**
+     * Deliver every result collected during this frame in one evaluateJavascript call
+     */
+    private void flush() {
+        flushScheduled = false;
+        JSONArray batch = new JSONArray();
+        JSONObject message;
+        while ((message = results.poll()) != null) {
+            batch.put(message);
+        }
+        if (batch.length() > 0) {
+            webView.evaluateJavascript("window.TSKBridge && TSKBridge.__resolve(" + batch + ");", null);
+        }
+    }
+
+    /**
+     * A queued call, ordered by priority and then by arrival
+     */
+    private static class Call extends FutureTask<Void> implements Comparable<Call> {
+        private final int priority;
+        private final long sequence;
+
+        Call(int priority, long sequence, Runnable runnable) {
+            super(runnable, null);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Call other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.tskplatform.app;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the API data the web app needs for its first render in parallel with the HTML load
+ * Responses land in ApiResponseCache, so the page's own requests for these routes are cache
+ * hits (or join the prefetch if it is still in flight). The results are also available to
+ * the page directly through Android.getBootData()
+ */
+public final class BootPrefetcher {
+    private static final String TAG = "BootPrefetcher";
+
+    static final String[] BOOT_ROUTES = {
+        "/api/user",
+        "/api/wallet/balance",
+        "/api/mining/settings",
+        "/api/notifications/unread-count"
+    };
+
+    private static boolean started = false;
+    private static final JSONObject results = new JSONObject();
+
+    private BootPrefetcher() {
+    }
+
+    /**
+     * Start prefetching (once per process) if there is a stored session
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        final ExecutorService executor = Executors.newFixedThreadPool(BOOT_ROUTES.length);
+        executor.execute(() -> {
+            // Reading cookies loads the WebView cookie store, so check the session off the main thread
+            boolean hasSession = NativeSession.getCookies(MainActivity.WEB_APP_URL) != null
+                || TSKPlatformApp.getInstance().getAuthToken() != null;
+            if (!hasSession) {
+                Log.d(TAG, "No stored session, skipping boot prefetch");
+                executor.shutdown();
+                return;
+            }
+
+            final AtomicInteger remaining = new AtomicInteger(BOOT_ROUTES.length);
+            final long start = System.currentTimeMillis();
+
+            for (final String route : BOOT_ROUTES) {
+                executor.execute(() -> {
+                    prefetch(route);
+                    if (remaining.decrementAndGet() == 0) {
+                        StartupMetrics.mark("boot_prefetch_done");
+                        Log.d(TAG, "Boot prefetch finished in " + (System.currentTimeMillis() - start) + " ms");
+                        executor.shutdown();
+                    }
+                });
+            }
+        });
+    }
+
+    private static void prefetch(String route) {
+        try {
+            ApiResponseCache.Entry entry = TSKPlatformApp.getInstance().getApiCache()
+                .prefetch(MainActivity.WEB_APP_URL + route.substring(1));
+
+            JSONObject result = new JSONObject();
+            result.put("status", entry.status);
+            result.put("fetchedAt", entry.storedAt);
+            result.put("body", new String(entry.body, "UTF-8"));
+            synchronized (BootPrefetcher.class) {
+                results.put(route, result);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Boot prefetch failed for " + route, e);
+        }
+    }
+
+    /**
+     * Get the prefetched responses that have completed, keyed by route
+     * Each entry has the HTTP status, the fetch time and the raw response body
+     */
+    public static synchronized String getResults() {
+        return results.toString();
+    }
+}
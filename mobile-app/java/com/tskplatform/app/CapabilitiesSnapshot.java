@@ -0,0 +1,126 @@
+package com.tskplatform.app;
+
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.webkit.ScriptHandler;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+
+/**
+ * Precomputed snapshot of the values the web app reads on boot
+ * (device info, auth token, dark mode, notification state, FCM token).
+ * The snapshot is injected as a document-start script as window.__TSK_CAPABILITIES__,
+ * so page boot needs no synchronous bridge calls. When a value changes natively the
+ * script is replaced and the page receives a "tsk:capabilities" event. The snapshot holds
+ * the auth and FCM tokens, so it is only ever given to pages of the app origin
+ */
+public class CapabilitiesSnapshot {
+    private static final String TAG = "CapabilitiesSnapshot";
+    private static final String ALLOWED_ORIGIN = "https://" + MainActivity.APP_HOST;
+
+    private final WebView webView;
+    private final NotificationManager notificationManager;
+    private final FirebaseTokenProvider firebaseTokenProvider;
+    private ScriptHandler scriptHandler;
+    private String currentJson;
+
+    public CapabilitiesSnapshot(WebView webView, NotificationManager notificationManager,
+                                FirebaseTokenProvider firebaseTokenProvider) {
+        this.webView = webView;
+        this.notificationManager = notificationManager;
+        this.firebaseTokenProvider = firebaseTokenProvider;
+    }
+
+    /**
+     * Register the document-start script (call on the main thread before loading the page)
+     */
+    public void install() {
+        currentJson = build();
+        installScript();
+    }
+
+    /**
+     * Rebuild the snapshot and push it to the page if anything changed (main thread)
+     */
+    public void update() {
+        String json = build();
+        if (json.equals(currentJson)) {
+            return;
+        }
+        currentJson = json;
+
+        // Future documents get the new snapshot at start...
+        installScript();
+
+        // ...and the current one is told about the change
+        if (!isAllowedOrigin(webView.getUrl())) {
+            return;
+        }
+        webView.evaluateJavascript(buildScript(json) +
+            "window.dispatchEvent(new CustomEvent('tsk:capabilities', { detail: window.__TSK_CAPABILITIES__ }));", null);
+    }
+
+    /**
+     * Fallback for WebViews without document-start scripts: inject as early as we can
+     */
+    public void onPageStarted(String url) {
+        if (scriptHandler == null && currentJson != null && isAllowedOrigin(url)) {
+            webView.evaluateJavascript(buildScript(currentJson), null);
+        }
+    }
+
+    private void installScript() {
+        if (!WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+            return;
+        }
+
+        if (scriptHandler != null) {
+            scriptHandler.remove();
+        }
+        scriptHandler = WebViewCompat.addDocumentStartJavaScript(
+            webView, buildScript(currentJson), Collections.singleton(ALLOWED_ORIGIN));
+    }
+
+    /**
+     * Check whether a URL belongs to the app origin (other replit.app pages may be open too)
+     */
+    private static boolean isAllowedOrigin(String url) {
+        if (url == null) {
+            return false;
+        }
+        Uri uri = Uri.parse(url);
+        return "https".equals(uri.getScheme()) && MainActivity.APP_HOST.equals(uri.getHost())
+            && uri.getPort() == -1;
+    }
+
+    private static String buildScript(String json) {
+        return "window.__TSK_CAPABILITIES__ = Object.freeze(" + json + ");";
+    }
+
+    /**
+     * Collect the current values as JSON
+     */
+    private String build() {
+        TSKPlatformApp app = TSKPlatformApp.getInstance();
+        JSONObject snapshot = new JSONObject();
+        try {
+            snapshot.put("platform", "android");
+            snapshot.put("deviceInfo", app.getDeviceInfo());
+            snapshot.put("authToken", app.getAuthToken() != null ? app.getAuthToken() : JSONObject.NULL);
+            snapshot.put("darkMode", app.isDarkModeEnabled());
+            snapshot.put("notificationsEnabled", notificationManager.areNotificationsEnabled());
+            String firebaseToken = firebaseTokenProvider.getToken();
+            snapshot.put("firebaseToken", firebaseToken != null ? firebaseToken : JSONObject.NULL);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building capabilities snapshot", e);
+        }
+        return snapshot.toString();
+    }
+}
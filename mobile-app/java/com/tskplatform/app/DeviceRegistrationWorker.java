@@ -0,0 +1,426 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Persistent queue of device registrations with the push server
+ * Register and unregister calls only record the desired state of a token in
+ * SharedPreferences; this worker sends it once the network is available. A call is
+ * skipped when the server already has the same token, user, app version and notification
+ * settings, a queued register followed by an unregister of the same token cancel out,
+ * and failed calls are retried with exponential backoff and jitter. Retries wait in a
+ * work chain of their own, so a new call is sent right away instead of behind a backoff
+ * delay. The queue survives process death
+ */
+public class DeviceRegistrationWorker extends Worker {
+    private static final String TAG = "DeviceRegistration";
+    private static final String PREFERENCES_NAME = "tsk_device_registration";
+    private static final String WORK_NAME = "device-registration";
+    private static final String RETRY_WORK_NAME = "device-registration-retry";
+    private static final String API_ENDPOINT = MainActivity.WEB_APP_URL + "api/notifications";
+    private static final long BASE_DELAY = 15; // Seconds
+    private static final long MAX_DELAY = 30 * 60; // Seconds
+    private static final int MAX_ATTEMPTS = 8;
+
+    private static final String KEY_QUEUE = "queue";
+    private static final String KEY_REGISTERED = "registered";
+    private static final String KEY_SEQUENCE = "sequence";
+    private static final String KEY_USER_ID = "user_id";
+    private static final String KEY_PLATFORM = "platform";
+    private static final String KEY_ATTEMPT = "attempt";
+
+    /** Output of a finished run: whether the queue was emptied */
+    public static final String KEY_DRAINED = "drained";
+
+    private static final int SENT = 0;
+    private static final int RETRY = 1;
+    private static final int DROPPED = 2;
+
+    private static final Object LOCK = new Object();
+
+    public DeviceRegistrationWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Queue registration of a token for a user
+     *
+     * @return The id of the work that will send it, or null if the server already has it
+     */
+    public static UUID register(Context context, String token, int userId, String platform) {
+        JSONObject notifications = NotificationStateReporter.snapshot(context);
+        JSONObject op = new JSONObject();
+        try {
+            op.put("userId", userId);
+            op.put("platform", platform);
+            op.put("notifications", notifications);
+            op.put("hash", registrationHash(context, token, userId, platform, notifications));
+        } catch (JSONException e) {
+            Log.e(TAG, "Error queueing registration", e);
+            return null;
+        }
+
+        // Remembered so a rotated token can be registered for the same user
+        prefs(context).edit()
+            .putInt(KEY_USER_ID, userId)
+            .putString(KEY_PLATFORM, platform)
+            .apply();
+        return queue(context, token, op);
+    }
+
+    /**
+     * Queue removal of a token from the server
+     *
+     * @return The id of the work that will send it, or null if the server doesn't have it
+     */
+    public static UUID unregister(Context context, String token) {
+        // The user opted out, so a later token rotation must not register again
+        prefs(context).edit()
+            .remove(KEY_USER_ID)
+            .remove(KEY_PLATFORM)
+            .apply();
+        return queue(context, token, new JSONObject());
+    }
+
+    /**
+     * Move the device's registration to a new token after Firebase rotated it
+     * Does nothing unless a user registered this device; any other token registered or
+     * queued for it is unregistered
+     */
+    public static void onTokenRotated(Context context, String token) {
+        SharedPreferences prefs = prefs(context);
+        int userId;
+        String platform;
+        List<String> stale = new ArrayList<>();
+        synchronized (LOCK) {
+            if (!prefs.contains(KEY_USER_ID)) {
+                return;
+            }
+            userId = prefs.getInt(KEY_USER_ID, 0);
+            platform = prefs.getString(KEY_PLATFORM, "android-firebase");
+
+            for (JSONObject tokens : new JSONObject[] { readRegistered(prefs), readQueue(prefs) }) {
+                Iterator<String> keys = tokens.keys();
+                while (keys.hasNext()) {
+                    String old = keys.next();
+                    if (!old.equals(token) && !stale.contains(old)) {
+                        stale.add(old);
+                    }
+                }
+            }
+        }
+
+        for (String old : stale) {
+            queue(context, old, new JSONObject());
+        }
+        register(context, token, userId, platform);
+    }
+
+    /**
+     * Queue the current token again for the registered user; sent only if something in the
+     * registration (such as the notification settings) changed since it was last sent
+     */
+    public static void refresh(Context context) {
+        String token = PushTokenManager.getInstance(context).getToken();
+        SharedPreferences prefs = prefs(context);
+        if (token == null || !prefs.contains(KEY_USER_ID)) {
+            return;
+        }
+        register(context, token, prefs.getInt(KEY_USER_ID, 0), prefs.getString(KEY_PLATFORM, "android-firebase"));
+    }
+
+    /**
+     * Whether a user has registered this device for push (and hasn't unregistered since)
+     */
+    public static boolean isRegistered(Context context) {
+        return prefs(context).contains(KEY_USER_ID);
+    }
+
+    /**
+     * Restart sending anything left in the queue (e.g. after the retries ran out last session)
+     */
+    public static void resume(Context context) {
+        synchronized (LOCK) {
+            if (readQueue(prefs(context)).length() == 0) {
+                return;
+            }
+        }
+        schedule(context, 0, 0, ExistingWorkPolicy.KEEP);
+    }
+
+    /**
+     * Record the desired state of a token, collapsing it with whatever is already queued for it
+     */
+    private static UUID queue(Context context, String token, JSONObject op) {
+        String hash = op.optString("hash", null);
+        synchronized (LOCK) {
+            SharedPreferences prefs = prefs(context);
+            JSONObject queue = readQueue(prefs);
+            String current = readRegistered(prefs).optString(token, null);
+
+            boolean unchanged = hash == null ? current == null : hash.equals(current);
+            if (unchanged) {
+                // Already the server's state; also cancels a queued opposite call
+                queue.remove(token);
+                prefs.edit().putString(KEY_QUEUE, queue.toString()).apply();
+                Log.d(TAG, "Registration of " + shorten(token) + " is up to date");
+                return null;
+            }
+
+            try {
+                long sequence = prefs.getLong(KEY_SEQUENCE, 0) + 1;
+                op.put("sequence", sequence);
+                queue.put(token, op);
+                prefs.edit()
+                    .putString(KEY_QUEUE, queue.toString())
+                    .putLong(KEY_SEQUENCE, sequence)
+                    .apply();
+            } catch (JSONException e) {
+                Log.e(TAG, "Error queueing registration", e);
+                return null;
+            }
+        }
+        // The new run sends everything queued, so a pending backoff retry is no longer needed.
+        // Appended rather than replaced, so a run that is sending isn't cut off halfway
+        WorkManager.getInstance(context).cancelUniqueWork(RETRY_WORK_NAME);
+        return schedule(context, 0, 0, ExistingWorkPolicy.APPEND_OR_REPLACE);
+    }
+
+    private static UUID schedule(Context context, int attempt, long delay, ExistingWorkPolicy policy) {
+        return schedule(context, WORK_NAME, attempt, delay, policy);
+    }
+
+    private static UUID schedule(Context context, String name, int attempt, long delay, ExistingWorkPolicy policy) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(DeviceRegistrationWorker.class)
+            .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+            .setInitialDelay(delay, TimeUnit.SECONDS)
+            .setInputData(new Data.Builder().putInt(KEY_ATTEMPT, attempt).build())
+            .addTag(TAG)
+            .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(name, policy, request);
+        return request.getId();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        if (drain()) {
+            return Result.success(new Data.Builder().putBoolean(KEY_DRAINED, true).build());
+        }
+        if (isStopped()) {
+            // WorkManager runs it again itself, so no retry is scheduled here
+            return Result.retry();
+        }
+
+        int attempt = getInputData().getInt(KEY_ATTEMPT, 0);
+        Data output = new Data.Builder().putBoolean(KEY_DRAINED, false).build();
+        if (attempt + 1 >= MAX_ATTEMPTS) {
+            Log.w(TAG, "Giving up on device registration after " + (attempt + 1) + " attempts");
+            return Result.failure(output);
+        }
+
+        // WorkManager's own backoff has no jitter, so the retry is scheduled here, in a chain
+        // new calls don't wait behind
+        long delay = backoffDelay(attempt);
+        Log.d(TAG, "Retrying device registration in " + delay + " s");
+        schedule(getApplicationContext(), RETRY_WORK_NAME, attempt + 1, delay, ExistingWorkPolicy.APPEND_OR_REPLACE);
+        return Result.success(output);
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half the delay is fixed, half is random,
+     * so devices that failed together don't all retry together
+     */
+    private static long backoffDelay(int attempt) {
+        long delay = Math.min(MAX_DELAY, BASE_DELAY << Math.min(attempt, 16));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Send queued calls until the queue is empty or one needs retrying
+     *
+     * @return True if the queue was emptied
+     */
+    private boolean drain() {
+        Context context = getApplicationContext();
+        SharedPreferences prefs = prefs(context);
+
+        while (true) {
+            // A cancelled run stops between calls, after the last one has been recorded
+            if (isStopped()) {
+                return false;
+            }
+
+            String token;
+            JSONObject op;
+            synchronized (LOCK) {
+                JSONObject queue = readQueue(prefs);
+                Iterator<String> keys = queue.keys();
+                if (!keys.hasNext()) {
+                    return true;
+                }
+                token = keys.next();
+                op = queue.optJSONObject(token);
+            }
+
+            int outcome = op != null ? send(token, op) : DROPPED;
+            if (outcome == RETRY) {
+                return false;
+            }
+
+            synchronized (LOCK) {
+                JSONObject queue = readQueue(prefs);
+                JSONObject registered = readRegistered(prefs);
+                try {
+                    if (outcome == SENT && op.has("hash")) {
+                        registered.put(token, op.getString("hash"));
+                    } else if (outcome == SENT) {
+                        registered.remove(token);
+                    }
+                } catch (JSONException e) {
+                    Log.e(TAG, "Error recording registration", e);
+                }
+
+                // Leave the entry if it was replaced while the call was in flight
+                JSONObject latest = queue.optJSONObject(token);
+                if (latest == null || op == null || latest.optLong("sequence") == op.optLong("sequence")) {
+                    queue.remove(token);
+                }
+                prefs.edit()
+                    .putString(KEY_QUEUE, queue.toString())
+                    .putString(KEY_REGISTERED, registered.toString())
+                    .apply();
+            }
+        }
+    }
+
+    /**
+     * Make one register or unregister call
+     *
+     * @return SENT, RETRY for errors that may pass, or DROPPED for calls the server will never accept
+     */
+    private int send(String token, JSONObject op) {
+        boolean register = op.has("hash");
+        String url = API_ENDPOINT + (register ? "/register-device" : "/unregister-device");
+
+        try {
+            JSONObject body = new JSONObject();
+            body.put("token", token);
+            body.put("deviceId", token.substring(0, Math.min(32, token.length())));
+            if (register) {
+                body.put("userId", op.getInt("userId"));
+                body.put("platform", op.getString("platform"));
+                body.put("deviceName", Build.MANUFACTURER + " " + Build.MODEL);
+                body.put("appVersion", getAppVersion(getApplicationContext()));
+                JSONObject notifications = op.optJSONObject("notifications");
+                if (notifications != null) {
+                    body.put("notificationsEnabled", notifications.getBoolean("enabled"));
+                    body.put("channels", notifications.getJSONObject("channels"));
+                }
+            }
+
+            RequestBody requestBody = RequestBody.create(MediaType.parse("application/json"), body.toString());
+            Request.Builder builder = new Request.Builder().url(url);
+            if (register) {
+                builder.post(requestBody);
+            } else {
+                builder.delete(requestBody);
+            }
+            NativeSession.applyTo(builder, url);
+
+            try (Response response = TSKPlatformApp.getInstance().getHttpClient().newCall(builder.build()).execute()) {
+                NativeSession.storeCookies(response);
+                int code = response.code();
+                if (response.isSuccessful() || (!register && code == 404)) {
+                    Log.d(TAG, (register ? "Registered " : "Unregistered ") + shorten(token));
+                    return SENT;
+                }
+                // A 401 means there is no session (e.g. after logout), which retrying won't fix
+                if (code >= 500 || code == 408 || code == 429) {
+                    Log.w(TAG, "Device registration failed with " + code + ", will retry");
+                    return RETRY;
+                }
+                Log.e(TAG, "Device registration rejected with " + code + ": " +
+                    (response.body() != null ? response.body().string() : "No response body"));
+                return DROPPED;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Error sending device registration, will retry", e);
+            return RETRY;
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid queued registration", e);
+            return DROPPED;
+        }
+    }
+
+    private static String registrationHash(Context context, String token, int userId, String platform,
+                                           JSONObject notifications) {
+        return ApiResponseCache.sha1(token + "|" + userId + "|" + platform + "|" + getAppVersion(context) +
+            "|" + notifications);
+    }
+
+    private static String getAppVersion(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionName;
+        } catch (PackageManager.NameNotFoundException e) {
+            return "unknown";
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static JSONObject readQueue(SharedPreferences prefs) {
+        return readObject(prefs, KEY_QUEUE);
+    }
+
+    /**
+     * Tokens the server has confirmed, mapped to the hash they were registered with
+     */
+    private static JSONObject readRegistered(SharedPreferences prefs) {
+        return readObject(prefs, KEY_REGISTERED);
+    }
+
+    private static JSONObject readObject(SharedPreferences prefs, String key) {
+        try {
+            return new JSONObject(prefs.getString(key, "{}"));
+        } catch (JSONException e) {
+            return new JSONObject();
+        }
+    }
+
+    private static String shorten(String token) {
+        return token.substring(0, Math.min(8, token.length())) + "...";
+    }
+}
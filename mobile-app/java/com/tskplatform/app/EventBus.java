@@ -0,0 +1,152 @@
+package com.tskplatform.app;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process, lifecycle-aware event bus
+ * Replaces system-wide broadcasts for delivering events (such as FCM messages) to screens:
+ * nothing leaves the process and other apps cannot listen. Events are typed by class,
+ * delivered on the main thread, and the last REPLAY_SIZE events of each type are kept so
+ * a screen that subscribes shortly after an event can still receive it
+ */
+public final class EventBus {
+    private static final int REPLAY_SIZE = 10;
+
+    private static final EventBus instance = new EventBus();
+
+    /**
+     * Receives events of one type on the main thread
+     */
+    public interface Subscriber<T> {
+        void onEvent(T event);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<Class<?>, List<Subscription<?>>> subscriptions = new HashMap<>();
+    private final Map<Class<?>, ArrayDeque<Timestamped>> replayBuffers = new HashMap<>();
+
+    private EventBus() {
+    }
+
+    public static EventBus getInstance() {
+        return instance;
+    }
+
+    /**
+     * Publish an event from any thread
+     */
+    public <T> void publish(T event) {
+        List<Subscription<?>> targets;
+        synchronized (this) {
+            ArrayDeque<Timestamped> buffer = replayBuffers.get(event.getClass());
+            if (buffer == null) {
+                buffer = new ArrayDeque<>();
+                replayBuffers.put(event.getClass(), buffer);
+            }
+            if (buffer.size() >= REPLAY_SIZE) {
+                buffer.pollFirst();
+            }
+            buffer.addLast(new Timestamped(event));
+
+            List<Subscription<?>> list = subscriptions.get(event.getClass());
+            targets = list != null ? new ArrayList<>(list) : new ArrayList<>();
+        }
+
+        for (Subscription<?> subscription : targets) {
+            subscription.post(event);
+        }
+    }
+
+    /**
+     * Subscribe for as long as the owner is alive (call on the main thread)
+     *
+     * @param owner        Subscription is removed when the owner is destroyed
+     * @param type         Event class to receive
+     * @param replayWindow Also deliver buffered events published within this many milliseconds (0 for none)
+     */
+    public <T> void subscribe(LifecycleOwner owner, Class<T> type, long replayWindow, Subscriber<T> subscriber) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+
+        final Subscription<T> subscription = new Subscription<>(type, subscriber);
+        List<Object> replay = new ArrayList<>();
+        synchronized (this) {
+            List<Subscription<?>> list = subscriptions.get(type);
+            if (list == null) {
+                list = new CopyOnWriteArrayList<>();
+                subscriptions.put(type, list);
+            }
+            list.add(subscription);
+
+            ArrayDeque<Timestamped> buffer = replayBuffers.get(type);
+            if (buffer != null && replayWindow > 0) {
+                long since = System.currentTimeMillis() - replayWindow;
+                for (Timestamped entry : buffer) {
+                    if (entry.publishedAt >= since) {
+                        replay.add(entry.event);
+                    }
+                }
+            }
+        }
+
+        owner.getLifecycle().addObserver((LifecycleEventObserver) (source, lifecycleEvent) -> {
+            if (lifecycleEvent == Lifecycle.Event.ON_DESTROY) {
+                unsubscribe(subscription);
+            }
+        });
+
+        for (Object event : replay) {
+            subscription.post(event);
+        }
+    }
+
+    private synchronized void unsubscribe(Subscription<?> subscription) {
+        subscription.active = false;
+        List<Subscription<?>> list = subscriptions.get(subscription.type);
+        if (list != null) {
+            list.remove(subscription);
+        }
+    }
+
+    private class Subscription<T> {
+        final Class<T> type;
+        final Subscriber<T> subscriber;
+        volatile boolean active = true;
+
+        Subscription(Class<T> type, Subscriber<T> subscriber) {
+            this.type = type;
+            this.subscriber = subscriber;
+        }
+
+        void post(Object event) {
+            mainHandler.post(() -> {
+                if (active) {
+                    subscriber.onEvent(type.cast(event));
+                }
+            });
+        }
+    }
+
+    private static class Timestamped {
+        final Object event;
+        final long publishedAt;
+
+        Timestamped(Object event) {
+            this.event = event;
+            this.publishedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dns;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * The process-wide native HTTP stack
+ * One client is shared by every native caller (token registration, prefetching, request
+ * interception, notification actions and images), so they all reuse the same warm
+ * connections: a shared connection pool, HTTP/2 multiplexing to the API host, an
+ * in-memory DNS cache, a TLS session cache for resumed handshakes, and (in the main
+ * process) a size-bounded HTTP disk cache. Callers needing different timeouts use
+ * client().newBuilder(), which keeps the pool and caches
+ */
+public class HttpStack {
+    private static final String TAG = "HttpStack";
+    private static final String CACHE_DIR = "http-cache";
+    private static final long DISK_CACHE_SIZE = 10L * 1024 * 1024; // 10 MB
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long DNS_TTL = 5 * 60 * 1000; // 5 minutes
+    private static final int TLS_SESSION_CACHE_SIZE = 32;
+    private static final int TLS_SESSION_TIMEOUT = 24 * 60 * 60; // Seconds
+
+    private final OkHttpClient client;
+
+    public HttpStack(Context context) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .connectTimeout(30, TimeUnit.SECONDS)
+            .writeTimeout(30, TimeUnit.SECONDS)
+            .readTimeout(30, TimeUnit.SECONDS)
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .dns(new CachingDns());
+
+        // OkHttp's disk cache can't be shared between processes, so only the main process has one
+        if (TSKPlatformApp.isMainProcess(context)) {
+            builder.cache(new Cache(new File(context.getCacheDir(), CACHE_DIR), DISK_CACHE_SIZE))
+                .addNetworkInterceptor(HttpStack::skipCachedElsewhere);
+        }
+
+        configureTls(builder);
+        client = builder.build();
+    }
+
+    /**
+     * Get the shared client
+     */
+    public OkHttpClient client() {
+        return client;
+    }
+
+    /**
+     * Use our own SSLContext so its client session cache (and so TLS session resumption)
+     * is sized explicitly and shared by every connection this client makes
+     */
+    private static void configureTls(OkHttpClient.Builder builder) {
+        try {
+            TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init((KeyStore) null);
+            TrustManager[] trustManagers = trustManagerFactory.getTrustManagers();
+            if (trustManagers.length != 1 || !(trustManagers[0] instanceof X509TrustManager)) {
+                return;
+            }
+
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, trustManagers, null);
+            sslContext.getClientSessionContext().setSessionCacheSize(TLS_SESSION_CACHE_SIZE);
+            sslContext.getClientSessionContext().setSessionTimeout(TLS_SESSION_TIMEOUT);
+            builder.sslSocketFactory(sslContext.getSocketFactory(), (X509TrustManager) trustManagers[0]);
+        } catch (Exception e) {
+            // The platform default still resumes sessions, just with its own cache settings
+            Log.w(TAG, "Using the default TLS configuration", e);
+        }
+    }
+
+    /**
+     * API responses are per user and hashed assets are kept by AssetCache, so neither is
+     * stored in the HTTP disk cache unless the server explicitly allows it
+     */
+    private static Response skipCachedElsewhere(Interceptor.Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        String path = chain.request().url().encodedPath();
+        if ((path.startsWith("/api/") || path.startsWith("/assets/")) && response.header("Cache-Control") == null) {
+            return response.newBuilder().header("Cache-Control", "no-store").build();
+        }
+        return response;
+    }
+
+    /**
+     * System DNS with an in-memory cache, so repeated connections skip the lookup.
+     * A stale answer is used if a fresh lookup fails
+     */
+    private static class CachingDns implements Dns {
+        private final Map<String, CachedLookup> cache = new ConcurrentHashMap<>();
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            CachedLookup cached = cache.get(hostname);
+            long now = SystemClock.elapsedRealtime();
+            if (cached != null && now - cached.resolvedAt < DNS_TTL) {
+                return cached.addresses;
+            }
+
+            try {
+                List<InetAddress> addresses = Dns.SYSTEM.lookup(hostname);
+                cache.put(hostname, new CachedLookup(addresses, now));
+                return addresses;
+            } catch (UnknownHostException e) {
+                if (cached != null) {
+                    return cached.addresses;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static class CachedLookup {
+        final List<InetAddress> addresses;
+        final long resolvedAt;
+
+        CachedLookup(List<InetAddress> addresses, long resolvedAt) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+}
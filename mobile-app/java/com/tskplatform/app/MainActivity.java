@@ -2,19 +2,20 @@ package com.tskplatform.app;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewGroup;
 import android.webkit.WebResourceError;
 import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
@@ -31,31 +32,43 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.google.firebase.messaging.FirebaseMessaging;
 
+import org.json.JSONObject;
+
 /**
  * Main activity for the TSK Platform Android app
  * Contains a WebView that loads the web app and JavaScript interfaces for native functionality
  */
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
-    private static final String WEB_APP_URL = "https://tskplatform.replit.app/";
-    private static final String APP_HOST = "tskplatform.replit.app";
-    private static final String[] ALLOWED_HOSTS = {"tskplatform.replit.app", "replit.app"};
+    static final String WEB_APP_URL = "https://tskplatform.replit.app/";
+    static final String APP_HOST = "tskplatform.replit.app";
+    static final String[] ALLOWED_HOSTS = {"tskplatform.replit.app", "replit.app"};
+    private static final long SPLASH_READY_TIMEOUT = 5000; // Fallback if the page never signals readiness
+    private static final long PUSH_REPLAY_WINDOW = 30000;
     
     private WebView webView;
     private ProgressBar progressBar;
     private SwipeRefreshLayout swipeRefreshLayout;
     private boolean isPageLoaded = false;
     private String pendingDeepLink = null;
+    private boolean clearHistoryOnPageFinished = false;
+    
+    // Readiness-gated splash
+    private View splashOverlay;
+    private boolean splashDismissed = true;
+    private final Handler splashHandler = new Handler(Looper.getMainLooper());
+    private final Runnable splashTimeout = () -> dismissSplash("timeout");
     
     // Notification components
     private NotificationManager notificationManager;
     private FirebaseTokenProvider firebaseTokenProvider;
+    private CapabilitiesSnapshot capabilitiesSnapshot;
+    private WebAppInterface webAppInterface;
+    private AsyncBridge asyncBridge;
+    private PageEventChannel pageEventChannel;
     private ActivityResultLauncher<String> requestPermissionLauncher;
     private PermissionCallback pendingPermissionCallback;
     
-    // BroadcastReceiver for FCM messages
-    private BroadcastReceiver fcmBroadcastReceiver;
-    
     @SuppressLint("SetJavaScriptEnabled")
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -63,9 +76,16 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
         
         // Initialize components
-        webView = findViewById(R.id.webview);
         progressBar = findViewById(R.id.progressBar);
         swipeRefreshLayout = findViewById(R.id.swipeRefreshLayout);
+        attachWebView();
+        splashOverlay = findViewById(R.id.splash_overlay);
+        
+        // Keep the splash on screen until the WebView is ready to show something
+        if (savedInstanceState == null && getIntent() != null
+                && getIntent().getBooleanExtra(SplashActivity.EXTRA_SPLASH_OVERLAY, false)) {
+            showSplash();
+        }
         
         // Configure WebView
         configureWebView();
@@ -78,10 +98,112 @@ public class MainActivity extends AppCompatActivity {
         // Initialize notification components
         initializeNotifications();
         
+        // Inject boot values as a document-start script instead of synchronous bridge calls
+        capabilitiesSnapshot = new CapabilitiesSnapshot(webView, notificationManager, firebaseTokenProvider);
+        capabilitiesSnapshot.install();
+        firebaseTokenProvider.setTokenListener(token -> onCapabilitiesChanged());
+        
+        // Promise-based bridge that runs native calls off the JavaBridge thread
+        asyncBridge = new AsyncBridge(webView);
+        asyncBridge.install();
+        registerAsyncBridgeMethods();
+        
+        // Batched, JSON-encoded push delivery to the page
+        pageEventChannel = new PageEventChannel(webView);
+        pageEventChannel.install();
+        
+        // Forward pushes to the page; the channel queues them until the page is connected.
+        // Pushes from just before this screen was created (e.g. the one that launched it) are replayed
+        EventBus.getInstance().subscribe(this, PushEvent.class, PUSH_REPLAY_WINDOW,
+            event -> pageEventChannel.post(event.toJson()));
+        
+        // Load the web app once all interfaces and scripts are registered
+        webView.loadUrl(WEB_APP_URL);
+        
         // Handle intent for deep linking
         handleIntent(getIntent());
     }
     
+    /**
+     * Expose the bridge methods through TSKBridge.call() as well as the synchronous interfaces
+     */
+    private void registerAsyncBridgeMethods() {
+        NotificationManager.NotificationInterface notificationInterface = notificationManager.new NotificationInterface();
+        
+        asyncBridge.register("getDeviceInfo", args -> webAppInterface.getDeviceInfo());
+        asyncBridge.register("getAuthToken", args -> webAppInterface.getAuthToken());
+        asyncBridge.register("setAuthToken", args -> {
+            webAppInterface.setAuthToken(args.isNull(0) ? null : args.getString(0));
+            return null;
+        });
+        asyncBridge.register("isDarkModeEnabled", args -> webAppInterface.isDarkModeEnabled());
+        asyncBridge.register("setDarkMode", args -> {
+            webAppInterface.setDarkMode(args.getBoolean(0));
+            return null;
+        });
+        asyncBridge.register("getStartupMetrics", args -> webAppInterface.getStartupMetrics());
+        asyncBridge.register("getCacheStats", args -> webAppInterface.getCacheStats());
+        asyncBridge.register("getBootData", args -> webAppInterface.getBootData());
+        
+        asyncBridge.register("areNotificationsEnabled", args -> notificationInterface.areNotificationsEnabled());
+        asyncBridge.register("showMiningRewardNotification", args -> {
+            notificationInterface.showMiningRewardNotification(args.getDouble(0), args.optInt(1), args.optString(2, null));
+            return null;
+        });
+        asyncBridge.register("showChatMessageNotification", args -> {
+            notificationInterface.showChatMessageNotification(args.getString(0), args.getString(1), args.optString(2, null));
+            return null;
+        });
+        asyncBridge.register("showSystemNotification", args -> {
+            notificationInterface.showSystemNotification(args.getString(0), args.getString(1), args.optString(2, null));
+            return null;
+        });
+        
+        asyncBridge.register("getFirebaseToken", args -> firebaseTokenProvider.getToken());
+        
+        NotificationInbox inbox = NotificationInbox.getInstance(this);
+        asyncBridge.register("getInboxUnreadCount", args -> inbox.getUnreadCount());
+        asyncBridge.register("getInboxNotifications", args -> inbox.getPage(args.optLong(0), args.optInt(1, 20)));
+    }
+    
+    /**
+     * Refresh the capabilities snapshot when the user may have changed notification settings
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        onCapabilitiesChanged();
+        NotificationStateReporter.check(this);
+    }
+    
+    /**
+     * Push changed native values (token, dark mode, notification state) to the page
+     */
+    void onCapabilitiesChanged() {
+        if (capabilitiesSnapshot != null) {
+            capabilitiesSnapshot.update();
+        }
+    }
+    
+    /**
+     * Add the WebView to the layout: the prewarmed one if prewarming finished in time,
+     * otherwise a new one, so only one WebView is ever created
+     */
+    private void attachWebView() {
+        WebView warmWebView = WebViewPrewarmer.obtain(this);
+        if (warmWebView != null) {
+            webView = warmWebView;
+            clearHistoryOnPageFinished = true;
+            Log.d(TAG, "Using prewarmed WebView");
+        } else {
+            webView = new WebView(this);
+        }
+        
+        webView.setId(R.id.webview);
+        swipeRefreshLayout.addView(webView, new ViewGroup.LayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+    }
+    
     /**
      * Configure the WebView settings
      */
@@ -95,7 +217,8 @@ public class MainActivity extends AppCompatActivity {
         webSettings.setMixedContentMode(WebSettings.MIXED_CONTENT_ALWAYS_ALLOW);
         
         // Add JavaScript interfaces
-        webView.addJavascriptInterface(new WebAppInterface(this), "Android");
+        webAppInterface = new WebAppInterface(this, this);
+        webView.addJavascriptInterface(webAppInterface, "Android");
         
         // Set WebViewClient with improved external link handling
         webView.setWebViewClient(new WebViewClient() {
@@ -104,6 +227,9 @@ public class MainActivity extends AppCompatActivity {
                 super.onPageStarted(view, url, favicon);
                 progressBar.setVisibility(View.VISIBLE);
                 isPageLoaded = false;
+                capabilitiesSnapshot.onPageStarted(url);
+                asyncBridge.onPageStarted();
+                pageEventChannel.onPageStarted();
             }
             
             @Override
@@ -112,6 +238,18 @@ public class MainActivity extends AppCompatActivity {
                 progressBar.setVisibility(View.GONE);
                 swipeRefreshLayout.setRefreshing(false);
                 isPageLoaded = true;
+                pageEventChannel.onPageFinished();
+                
+                // Drop the prewarm preconnect page from the back stack
+                if (clearHistoryOnPageFinished) {
+                    view.clearHistory();
+                    clearHistoryOnPageFinished = false;
+                }
+                
+                // Devices without visual state callbacks dismiss the splash here
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                    dismissSplash("page_finished");
+                }
                 
                 // Process any pending deep link
                 if (pendingDeepLink != null) {
@@ -120,6 +258,41 @@ public class MainActivity extends AppCompatActivity {
                 }
             }
             
+            @Override
+            public void onPageCommitVisible(WebView view, String url) {
+                super.onPageCommitVisible(view, url);
+                
+                // Wait until the new page content is actually drawn before removing the splash
+                view.postVisualStateCallback(0, new WebView.VisualStateCallback() {
+                    @Override
+                    public void onComplete(long requestId) {
+                        dismissSplash("first_paint");
+                    }
+                });
+            }
+            
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                // Serve the SPA shell and its static files from the local app shell
+                WebResourceResponse response = TSKPlatformApp.getInstance().getAppShell().intercept(request);
+                if (response != null) {
+                    return response;
+                }
+                
+                // Hashed assets missing from the shell come from the native asset cache
+                response = TSKPlatformApp.getInstance().getAssetCache().intercept(request);
+                if (response != null) {
+                    return response;
+                }
+                
+                // Allow-listed API GETs go through the native response cache
+                response = TSKPlatformApp.getInstance().getApiCache().intercept(request);
+                if (response != null) {
+                    return response;
+                }
+                return super.shouldInterceptRequest(view, request);
+            }
+            
             @Override
             public boolean shouldOverrideUrlLoading(WebView view, WebResourceRequest request) {
                 String url = request.getUrl().toString();
@@ -151,12 +324,46 @@ public class MainActivity extends AppCompatActivity {
                     
                     // Show offline page or error message
                     showErrorPage();
+                    dismissSplash("error");
                 }
             }
         });
+    }
+    
+    /**
+     * Cover the WebView with the splash and arm the readiness timeout
+     */
+    private void showSplash() {
+        splashDismissed = false;
+        splashOverlay.setVisibility(View.VISIBLE);
+        splashHandler.postDelayed(splashTimeout, SPLASH_READY_TIMEOUT);
+    }
+    
+    /**
+     * Remove the splash overlay once the page has rendered, signalled readiness or timed out
+     *
+     * @param trigger What ended the splash, recorded with the time-to-first-paint
+     */
+    private void dismissSplash(String trigger) {
+        if (splashDismissed) {
+            return;
+        }
+        splashDismissed = true;
+        splashHandler.removeCallbacks(splashTimeout);
+        StartupMetrics.recordFirstPaint(this, trigger);
         
-        // Load the web app
-        webView.loadUrl(WEB_APP_URL);
+        splashOverlay.animate()
+            .alpha(0f)
+            .setDuration(200)
+            .withEndAction(() -> splashOverlay.setVisibility(View.GONE))
+            .start();
+    }
+    
+    /**
+     * Called when the web app reports that its first screen is rendered
+     */
+    void onWebAppReady() {
+        dismissSplash("web_ready");
     }
     
     /**
@@ -170,6 +377,13 @@ public class MainActivity extends AppCompatActivity {
         // Create Firebase token provider and add its interface to WebView
         firebaseTokenProvider = new FirebaseTokenProvider(this);
         webView.addJavascriptInterface(firebaseTokenProvider.new TokenInterface(), "FirebaseNotification");
+        DeviceRegistrationWorker.resume(this);
+        TopicSubscriptionWorker.syncIfStale(this);
+        
+        // Expose the native notification inbox and send any read marks queued last session
+        NotificationInbox inbox = NotificationInbox.getInstance(this);
+        webView.addJavascriptInterface(inbox.new InboxInterface(), "AndroidInbox");
+        inbox.scheduleFlush();
         
         // Initialize permission launcher for notification permissions
         requestPermissionLauncher = registerForActivityResult(
@@ -179,30 +393,9 @@ public class MainActivity extends AppCompatActivity {
                     pendingPermissionCallback.onResult(isGranted);
                     pendingPermissionCallback = null;
                 }
+                onCapabilitiesChanged();
             }
         );
-        
-        // Register receiver for FCM messages
-        fcmBroadcastReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                String type = intent.getStringExtra("type");
-                String title = intent.getStringExtra("title");
-                String message = intent.getStringExtra("message");
-                String deepLink = intent.getStringExtra("deepLink");
-                
-                // If the app is in the foreground, pass the notification to JavaScript
-                if (isPageLoaded) {
-                    String js = "if (window.handlePushNotification) { window.handlePushNotification('" +
-                        type + "', '" + escapeJsString(title) + "', '" + escapeJsString(message) + 
-                        "', '" + escapeJsString(deepLink) + "'); }";
-                    webView.evaluateJavascript(js, null);
-                }
-            }
-        };
-        
-        // Register the receiver
-        registerReceiver(fcmBroadcastReceiver, new IntentFilter("com.tskplatform.app.FCM_MESSAGE"));
     }
     
     /**
@@ -262,8 +455,8 @@ public class MainActivity extends AppCompatActivity {
         }
         
         // Use JavaScript to navigate to the deep link
-        String js = "if (window.location.pathname !== '" + escapeJsString(deepLink) + "') { " +
-                    "window.location.href = '" + escapeJsString(deepLink) + "'; }";
+        String js = "if (window.location.pathname !== " + toJsString(deepLink) + ") { " +
+                    "window.location.href = " + toJsString(deepLink) + "; }";
         webView.evaluateJavascript(js, null);
     }
     
@@ -297,11 +490,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        
-        // Unregister the FCM broadcast receiver
-        if (fcmBroadcastReceiver != null) {
-            unregisterReceiver(fcmBroadcastReceiver);
-        }
+        splashHandler.removeCallbacks(splashTimeout);
     }
     
     /**
@@ -461,13 +650,10 @@ public class MainActivity extends AppCompatActivity {
     }
     
     /**
-     * Escape a string for use in JavaScript
+     * Encode a string as a quoted JavaScript string literal
      */
-    private String escapeJsString(String str) {
-        if (str == null) {
-            return "";
-        }
-        return str.replace("'", "\\'").replace("\n", "\\n");
+    private String toJsString(String str) {
+        return JSONObject.quote(str != null ? str : "");
     }
     
     /**
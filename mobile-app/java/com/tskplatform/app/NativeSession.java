@@ -0,0 +1,54 @@
+package com.tskplatform.app;
+
+import android.webkit.CookieManager;
+
+import java.util.List;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Attaches the WebView session to native HTTP requests
+ * The web app authenticates with its session cookie, so native calls to the API send
+ * the WebView's cookies and hand any cookies the server sets back to the WebView
+ */
+public final class NativeSession {
+
+    private NativeSession() {
+    }
+
+    /**
+     * Add the session cookies for the given URL to a request
+     */
+    public static void applyTo(Request.Builder builder, String url) {
+        String cookies = getCookies(url);
+        if (cookies != null) {
+            builder.header("Cookie", cookies);
+        }
+    }
+
+    /**
+     * Store cookies set by a native response in the WebView cookie jar
+     */
+    public static void storeCookies(Response response) {
+        List<String> setCookies = response.headers("Set-Cookie");
+        if (setCookies.isEmpty()) {
+            return;
+        }
+
+        CookieManager cookieManager = CookieManager.getInstance();
+        String url = response.request().url().toString();
+        for (String cookie : setCookies) {
+            cookieManager.setCookie(url, cookie);
+        }
+        cookieManager.flush();
+    }
+
+    /**
+     * Get the WebView cookies for a URL, or null if there are none
+     */
+    public static String getCookies(String url) {
+        String cookies = CookieManager.getInstance().getCookie(url);
+        return cookies == null || cookies.isEmpty() ? null : cookies;
+    }
+}
@@ -0,0 +1,232 @@
+package com.tskplatform.app;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.app.RemoteInput;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Handles notification action buttons natively
+ * Activating mining and replying to a chat message are sent straight to the API with the
+ * stored session, and the notification is updated in place with the result, so neither
+ * needs MainActivity or the WebView to start
+ */
+public class NotificationActionReceiver extends BroadcastReceiver {
+    private static final String TAG = "NotificationAction";
+    private static final String ACTION_ACTIVATE_MINING = "com.tskplatform.app.action.ACTIVATE_MINING";
+    private static final String ACTION_REPLY = "com.tskplatform.app.action.REPLY";
+    private static final String KEY_REPLY_TEXT = "reply_text";
+    private static final String EXTRA_TAG = "notification_tag";
+    private static final String EXTRA_ID = "notification_id";
+    private static final String EXTRA_CHANNEL = "channel_id";
+    private static final String EXTRA_DEEP_LINK = "deep_link";
+    private static final String EXTRA_REPLY_PATH = "reply_path";
+    private static final long CALL_TIMEOUT = 8; // Seconds; a receiver must finish within 10
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * "Activate mining" button for mining notifications
+     */
+    public static NotificationCompat.Action activateMiningAction(Context context, NotificationIdentity identity,
+                                                                String channelId, String deepLink) {
+        Intent intent = baseIntent(context, ACTION_ACTIVATE_MINING, identity, channelId, deepLink);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, requestCode(identity, ACTION_ACTIVATE_MINING),
+            intent, PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+        return new NotificationCompat.Action.Builder(R.drawable.ic_mining,
+            context.getString(R.string.action_activate_mining), pendingIntent).build();
+    }
+
+    /**
+     * "Reply" button for chat notifications, or null if the message doesn't say where to reply
+     *
+     * @param senderId Sender of a direct message
+     * @param groupId  Group of a group message
+     */
+    public static NotificationCompat.Action replyAction(Context context, NotificationIdentity identity, String channelId,
+                                                        String deepLink, String senderId, String groupId) {
+        String replyPath;
+        if (groupId != null && groupId.matches("\\d+")) {
+            replyPath = "api/chat/groups/" + groupId + "/messages";
+        } else if (senderId != null && senderId.matches("\\d+")) {
+            replyPath = "api/chat/direct-messages/" + senderId;
+        } else {
+            return null;
+        }
+
+        Intent intent = baseIntent(context, ACTION_REPLY, identity, channelId, deepLink);
+        intent.putExtra(EXTRA_REPLY_PATH, replyPath);
+
+        // RemoteInput fills in the intent, so it has to be mutable
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            flags |= PendingIntent.FLAG_MUTABLE;
+        }
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, requestCode(identity, ACTION_REPLY), intent, flags);
+
+        RemoteInput remoteInput = new RemoteInput.Builder(KEY_REPLY_TEXT)
+            .setLabel(context.getString(R.string.action_reply_hint))
+            .build();
+        return new NotificationCompat.Action.Builder(R.drawable.ic_chat,
+                context.getString(R.string.action_reply), pendingIntent)
+            .addRemoteInput(remoteInput)
+            .setAllowGeneratedReplies(true)
+            .build();
+    }
+
+    private static Intent baseIntent(Context context, String action, NotificationIdentity identity,
+                                     String channelId, String deepLink) {
+        Intent intent = new Intent(context, NotificationActionReceiver.class);
+        intent.setAction(action);
+        intent.putExtra(EXTRA_TAG, identity.tag);
+        intent.putExtra(EXTRA_ID, identity.id);
+        intent.putExtra(EXTRA_CHANNEL, channelId);
+        intent.putExtra(EXTRA_DEEP_LINK, deepLink);
+        return intent;
+    }
+
+    private static int requestCode(NotificationIdentity identity, String action) {
+        return (identity.tag + ":" + identity.id + ":" + action).hashCode();
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final Context appContext = context.getApplicationContext();
+        final String action = intent.getAction();
+        final String replyText;
+
+        if (ACTION_REPLY.equals(action)) {
+            Bundle results = RemoteInput.getResultsFromIntent(intent);
+            CharSequence text = results != null ? results.getCharSequence(KEY_REPLY_TEXT) : null;
+            if (text == null || text.toString().trim().isEmpty()) {
+                return;
+            }
+            replyText = text.toString().trim();
+        } else if (ACTION_ACTIVATE_MINING.equals(action)) {
+            replyText = null;
+        } else {
+            return;
+        }
+
+        final PendingResult pendingResult = goAsync();
+        executor.execute(() -> {
+            try {
+                String result = ACTION_REPLY.equals(action)
+                    ? sendReply(intent.getStringExtra(EXTRA_REPLY_PATH), replyText)
+                    : activateMining();
+                updateNotification(appContext, intent, result);
+            } finally {
+                pendingResult.finish();
+            }
+        });
+    }
+
+    /**
+     * @return Text to show in the notification
+     */
+    private String activateMining() {
+        try (Response response = post("api/mine/activate", new JSONObject())) {
+            if (response.isSuccessful()) {
+                return "Mining activated";
+            }
+            return errorMessage(response, "Couldn't activate mining. Tap to open the app.");
+        } catch (Exception e) {
+            Log.w(TAG, "Error activating mining", e);
+            return "Couldn't activate mining. Tap to open the app.";
+        }
+    }
+
+    /**
+     * @return Text to show in the notification
+     */
+    private String sendReply(String path, String text) {
+        try (Response response = post(path, new JSONObject().put("content", text))) {
+            if (response.isSuccessful()) {
+                return "You: " + text;
+            }
+            return errorMessage(response, "Couldn't send your reply. Tap to open the chat.");
+        } catch (Exception e) {
+            Log.w(TAG, "Error sending reply", e);
+            return "Couldn't send your reply. Tap to open the chat.";
+        }
+    }
+
+    private Response post(String path, JSONObject body) throws Exception {
+        String url = MainActivity.WEB_APP_URL + path;
+        Request.Builder builder = new Request.Builder()
+            .url(url)
+            .post(RequestBody.create(MediaType.parse("application/json"), body.toString()));
+        NativeSession.applyTo(builder, url);
+
+        OkHttpClient client = TSKPlatformApp.getInstance().getHttpClient().newBuilder()
+            .callTimeout(CALL_TIMEOUT, TimeUnit.SECONDS)
+            .build();
+        Response response = client.newCall(builder.build()).execute();
+        NativeSession.storeCookies(response);
+        if (response.isSuccessful()) {
+            // The page's cached balance, mining status etc. may be out of date now
+            TSKPlatformApp.getInstance().getApiCache().invalidate();
+        }
+        return response;
+    }
+
+    private static String errorMessage(Response response, String fallback) {
+        if (response.code() == 401) {
+            return "Please sign in again. Tap to open the app.";
+        }
+        try {
+            String message = new JSONObject(response.body().string()).optString("message", null);
+            return message != null && !message.isEmpty() ? message : fallback;
+        } catch (Exception e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Replace the notification the action came from with the result (and without the buttons)
+     */
+    private static void updateNotification(Context context, Intent actionIntent, String text) {
+        String channelId = actionIntent.getStringExtra(EXTRA_CHANNEL);
+        int notificationId = actionIntent.getIntExtra(EXTRA_ID, 0);
+
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        String deepLink = actionIntent.getStringExtra(EXTRA_DEEP_LINK);
+        if (deepLink != null && !deepLink.isEmpty()) {
+            intent.putExtra("deepLink", deepLink);
+        }
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, notificationId, intent,
+            PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, channelId)
+            .setSmallIcon(ACTION_REPLY.equals(actionIntent.getAction()) ? R.drawable.ic_chat : R.drawable.ic_mining)
+            .setContentTitle("TSK Platform")
+            .setContentText(text)
+            .setStyle(new NotificationCompat.BigTextStyle().bigText(text))
+            .setGroup(NotificationCoalescer.groupKey(channelId))
+            .setOnlyAlertOnce(true)
+            .setAutoCancel(true)
+            .setContentIntent(pendingIntent);
+
+        NotificationManagerCompat.from(context).notify(actionIntent.getStringExtra(EXTRA_TAG), notificationId, builder.build());
+    }
+}
@@ -0,0 +1,134 @@
+package com.tskplatform.app;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Color;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The app's notification channels, defined in one place
+ * Channels are registered with the system once per process, and only the definitions
+ * whose version changed since the last run, or that the system doesn't have, are sent
+ * (so a normal start makes a single binder call). Retired channels are deleted once. To
+ * change a channel, edit its definition and bump its version; importance cannot be
+ * changed on an existing channel, so a new importance needs a new channel ID with the old
+ * one added to RETIRED_CHANNELS
+ */
+public final class NotificationChannelRegistry {
+    private static final String TAG = "NotificationChannels";
+    private static final String PREFERENCES_NAME = "tsk_notification_channels";
+
+    public static final String CHANNEL_MINING = "tsk_mining";
+    public static final String CHANNEL_CHAT = "tsk_chat";
+    public static final String CHANNEL_ALERTS = "tsk_alerts";
+
+    /**
+     * One notification channel
+     */
+    static final class Definition {
+        final String id;
+        final int version;
+        final String name;
+        final String description;
+        final int importance;
+        final int lightColor;
+
+        Definition(String id, int version, String name, String description, int importance, int lightColor) {
+            this.id = id;
+            this.version = version;
+            this.name = name;
+            this.description = description;
+            this.importance = importance;
+            this.lightColor = lightColor;
+        }
+    }
+
+    static final Definition[] CHANNELS = {
+        new Definition(CHANNEL_MINING, 1, "Mining Rewards",
+            "Notifications for TSK mining rewards", NotificationManager.IMPORTANCE_HIGH, Color.BLUE),
+        new Definition(CHANNEL_CHAT, 1, "Chat Messages",
+            "Notifications for chat messages", NotificationManager.IMPORTANCE_HIGH, Color.GREEN),
+        new Definition(CHANNEL_ALERTS, 1, "General Alerts",
+            "General system notifications and alerts", NotificationManager.IMPORTANCE_DEFAULT, Color.RED)
+    };
+
+    // Channels from earlier versions that should no longer exist
+    static final String[] RETIRED_CHANNELS = {};
+
+    private static volatile boolean registered = false;
+
+    private NotificationChannelRegistry() {
+    }
+
+    /**
+     * Make sure every channel exists with its current definition (cheap after the first call)
+     */
+    public static void ensureRegistered(Context context) {
+        if (registered) {
+            return;
+        }
+        synchronized (NotificationChannelRegistry.class) {
+            if (registered) {
+                return;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                migrate(context.getApplicationContext());
+            }
+            registered = true;
+        }
+    }
+
+    private static void migrate(Context context) {
+        NotificationManager notificationManager =
+            (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (notificationManager == null) {
+            return;
+        }
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = prefs.edit();
+        int changed = 0;
+
+        // The stored versions can come back from a backup without the channels, so also
+        // check which channels the system actually has (one binder call)
+        Set<String> existing = new HashSet<>();
+        for (NotificationChannel channel : notificationManager.getNotificationChannels()) {
+            existing.add(channel.getId());
+        }
+
+        for (Definition definition : CHANNELS) {
+            if (prefs.getInt(definition.id, 0) == definition.version && existing.contains(definition.id)) {
+                continue;
+            }
+
+            NotificationChannel channel = new NotificationChannel(definition.id, definition.name, definition.importance);
+            channel.setDescription(definition.description);
+            channel.enableLights(true);
+            channel.setLightColor(definition.lightColor);
+            channel.enableVibration(true);
+            notificationManager.createNotificationChannel(channel);
+
+            editor.putInt(definition.id, definition.version);
+            changed++;
+        }
+
+        for (String retired : RETIRED_CHANNELS) {
+            if (!prefs.getBoolean("retired_" + retired, false)) {
+                notificationManager.deleteNotificationChannel(retired);
+                editor.remove(retired).putBoolean("retired_" + retired, true);
+                changed++;
+            }
+        }
+
+        editor.apply();
+        if (changed > 0) {
+            Log.d(TAG, "Registered " + changed + " notification channel changes");
+        }
+    }
+}
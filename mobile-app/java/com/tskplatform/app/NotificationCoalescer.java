@@ -0,0 +1,288 @@
+package com.tskplatform.app;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import java.text.DecimalFormat;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups notifications per channel and coalesces bursts
+ * Each channel has a token bucket: while tokens are left a notification is posted on its
+ * own (in the channel's group), once the bucket is empty further notifications in the
+ * burst are only counted. The group summary ("You earned 12.5 TSK across 8 rewards") is
+ * updated at most once per SUMMARY_INTERVAL, so a reward storm costs a handful of notify
+ * calls instead of one per message. Repeated state updates replace their notification
+ * instead of counting as new ones. The summary is posted from post() itself when the
+ * interval allows; otherwise a one-shot flush is scheduled for the end of the interval,
+ * so only the changes of the last SUMMARY_INTERVAL are at risk if the ":push" process
+ * is killed. Chat messages are never coalesced; each one is posted on its own
+ */
+public final class NotificationCoalescer {
+    private static final String TAG = "NotificationCoalescer";
+    private static final int BUCKET_CAPACITY = 4;
+    private static final long REFILL_INTERVAL = 15000; // One more individual notification every 15 seconds
+    private static final long BURST_WINDOW = 10 * 60 * 1000; // A burst ends after 10 quiet minutes
+    private static final long SUMMARY_INTERVAL = 1000;
+    private static final int SUMMARY_LINES = 5;
+
+    private static NotificationCoalescer instance;
+
+    /**
+     * What the summary needs to know about a notification
+     */
+    public static class Entry {
+        final String channelId;
+        final String title;
+        final String message;
+        final String deepLink;
+        final int iconResId;
+        final double amount;
+
+        /**
+         * @param amount TSK amount for reward notifications, 0 otherwise
+         */
+        public Entry(String channelId, String title, String message, String deepLink, int iconResId, double amount) {
+            this.channelId = channelId;
+            this.title = title;
+            this.message = message;
+            this.deepLink = deepLink;
+            this.iconResId = iconResId;
+            this.amount = amount;
+        }
+    }
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, ChannelState> channels = new HashMap<>();
+
+    private NotificationCoalescer(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized NotificationCoalescer getInstance(Context context) {
+        if (instance == null) {
+            instance = new NotificationCoalescer(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Post a notification, or fold it into the channel's summary if the channel is rate limited
+     * Updates to a notification already counted in the burst (same identity) replace it in
+     * place; when the channel is rate limited only the latest update is posted, with the next
+     * summary
+     *
+     * @return true if the notification was posted right away
+     */
+    public synchronized boolean post(NotificationIdentity identity, NotificationCompat.Builder builder, Entry entry) {
+        builder.setGroup(groupKey(entry.channelId));
+        if (NotificationChannelRegistry.CHANNEL_CHAT.equals(entry.channelId)) {
+            NotificationManagerCompat.from(context).notify(identity.tag, identity.id, builder.build());
+            return true;
+        }
+
+        ChannelState state = getState(entry.channelId);
+        long now = SystemClock.elapsedRealtime();
+
+        if (now - state.lastEntryAt > BURST_WINDOW) {
+            state.resetBurst();
+        }
+        state.lastEntryAt = now;
+
+        boolean isNew = state.keys.add(identity.uniqueKey());
+        if (isNew) {
+            state.count++;
+            state.totalAmount += entry.amount;
+            state.latest = entry;
+            state.lines.addFirst(entry.message);
+            if (state.lines.size() > SUMMARY_LINES) {
+                state.lines.pollLast();
+            }
+        }
+
+        boolean posted = state.tryAcquire(now);
+        if (posted) {
+            state.pendingUpdates.remove(identity.uniqueKey());
+            NotificationManagerCompat.from(context).notify(identity.tag, identity.id, builder.build());
+        } else if (!isNew) {
+            state.pendingUpdates.put(identity.uniqueKey(), new PendingUpdate(identity, builder));
+        } else {
+            Log.d(TAG, "Coalesced notification on " + entry.channelId + " (" + state.count + " in burst)");
+        }
+
+        if (isNew && state.count > 1) {
+            state.summaryDirty = true;
+        }
+        if (now - state.lastFlushAt >= SUMMARY_INTERVAL) {
+            flush(entry.channelId, state, now);
+        } else {
+            scheduleFlush(entry.channelId, state);
+        }
+        return posted;
+    }
+
+    private ChannelState getState(String channelId) {
+        ChannelState state = channels.get(channelId);
+        if (state == null) {
+            state = new ChannelState();
+            channels.put(channelId, state);
+        }
+        return state;
+    }
+
+    /**
+     * Flush once the interval since the last flush is over, if anything is still waiting
+     */
+    private void scheduleFlush(final String channelId, final ChannelState state) {
+        if (state.flushScheduled || (state.pendingUpdates.isEmpty() && !state.summaryDirty)) {
+            return;
+        }
+        state.flushScheduled = true;
+        long delay = state.lastFlushAt + SUMMARY_INTERVAL - SystemClock.elapsedRealtime();
+        handler.postDelayed(() -> {
+            synchronized (NotificationCoalescer.this) {
+                state.flushScheduled = false;
+                flush(channelId, state, SystemClock.elapsedRealtime());
+            }
+        }, Math.max(0, delay));
+    }
+
+    /**
+     * Post the latest version of each held-back update and the summary
+     */
+    private void flush(String channelId, ChannelState state, long now) {
+        if (state.pendingUpdates.isEmpty() && !state.summaryDirty) {
+            return;
+        }
+        state.lastFlushAt = now;
+        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
+        for (PendingUpdate update : state.pendingUpdates.values()) {
+            notificationManager.notify(update.identity.tag, update.identity.id, update.builder.build());
+        }
+        state.pendingUpdates.clear();
+
+        if (state.summaryDirty) {
+            state.summaryDirty = false;
+            postSummary(channelId, state);
+        }
+    }
+
+    private void postSummary(String channelId, ChannelState state) {
+        Entry latest = state.latest;
+        if (latest == null) {
+            return;
+        }
+
+        String summaryText = summarize(state);
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle().setSummaryText(summaryText);
+        for (String line : state.lines) {
+            style.addLine(line);
+        }
+
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        if (latest.deepLink != null && !latest.deepLink.isEmpty()) {
+            intent.putExtra("deepLink", latest.deepLink);
+        }
+        PendingIntent pendingIntent = PendingIntent.getActivity(
+            context,
+            summaryId(channelId),
+            intent,
+            PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT
+        );
+
+        NotificationCompat.Builder summary = new NotificationCompat.Builder(context, channelId)
+            .setSmallIcon(latest.iconResId)
+            .setContentTitle("TSK Platform")
+            .setContentText(summaryText)
+            .setStyle(style)
+            .setNumber(state.count)
+            .setGroup(groupKey(channelId))
+            .setGroupSummary(true)
+            .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_CHILDREN)
+            .setOnlyAlertOnce(true)
+            .setAutoCancel(true)
+            .setContentIntent(pendingIntent);
+
+        NotificationManagerCompat.from(context).notify(summaryId(channelId), summary.build());
+    }
+
+    private static String summarize(ChannelState state) {
+        if (state.totalAmount > 0) {
+            return "You earned " + new DecimalFormat("0.##").format(state.totalAmount) +
+                " TSK across " + state.count + " rewards";
+        }
+        return state.count + " new notifications";
+    }
+
+    static String groupKey(String channelId) {
+        return "tsk_group:" + channelId;
+    }
+
+    private static int summaryId(String channelId) {
+        return ("tsk_summary:" + channelId).hashCode();
+    }
+
+    /**
+     * Token bucket and burst totals for one channel
+     */
+    private static class ChannelState {
+        double tokens = BUCKET_CAPACITY;
+        long lastRefill = SystemClock.elapsedRealtime();
+        long lastEntryAt;
+        int count;
+        double totalAmount;
+        Entry latest;
+        final ArrayDeque<String> lines = new ArrayDeque<>();
+        final Set<String> keys = new HashSet<>();
+        final Map<String, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+        boolean summaryDirty;
+        boolean flushScheduled;
+        long lastFlushAt;
+
+        boolean tryAcquire(long now) {
+            tokens = Math.min(BUCKET_CAPACITY, tokens + (now - lastRefill) / (double) REFILL_INTERVAL);
+            lastRefill = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        void resetBurst() {
+            count = 0;
+            totalAmount = 0;
+            latest = null;
+            lines.clear();
+            keys.clear();
+        }
+    }
+
+    /**
+     * The newest version of an update that had to wait for the rate limit
+     */
+    private static class PendingUpdate {
+        final NotificationIdentity identity;
+        final NotificationCompat.Builder builder;
+
+        PendingUpdate(NotificationIdentity identity, NotificationCompat.Builder builder) {
+            this.identity = identity;
+            this.builder = builder;
+        }
+    }
+}
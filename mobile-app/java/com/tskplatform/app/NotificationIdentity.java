@@ -0,0 +1,60 @@
+package com.tskplatform.app;
+
+/**
+ * Stable tag and ID for a notification
+ * Derived from the server notification ID, or from the collapse key for state messages
+ * (balance, mining status) so a newer state replaces the notification showing the older
+ * one. The ID is also used as the PendingIntent request code, so two notifications
+ * never share (and overwrite) each other's intent
+ */
+public final class NotificationIdentity {
+    private static final String TAG_MESSAGE = "tsk_message";
+    private static final String TAG_STATE = "tsk_state";
+    private static final String TAG_LOCAL = "tsk_local";
+
+    public final String tag;
+    public final int id;
+    public final String key;
+
+    /**
+     * True for state messages, which replace the previous notification quietly
+     */
+    public final boolean isUpdate;
+
+    private NotificationIdentity(String tag, String key, boolean isUpdate) {
+        this.tag = tag;
+        this.key = key;
+        this.id = key.hashCode();
+        this.isUpdate = isUpdate;
+    }
+
+    /**
+     * Identity of a received push
+     */
+    public static NotificationIdentity forMessage(PushMessage message) {
+        if (message.collapseKey != null) {
+            return new NotificationIdentity(TAG_STATE, message.type + ":" + message.collapseKey, true);
+        }
+        if (message.serverId != null) {
+            return new NotificationIdentity(TAG_MESSAGE, message.serverId, false);
+        }
+        if (message.messageId != null) {
+            return new NotificationIdentity(TAG_MESSAGE, message.messageId, false);
+        }
+        return new NotificationIdentity(TAG_MESSAGE, message.type + ":" + message.receivedAt, false);
+    }
+
+    /**
+     * Identity of a notification requested by the web app; identical content shows once
+     */
+    public static NotificationIdentity forContent(String channelId, String title, String message) {
+        return new NotificationIdentity(TAG_LOCAL, channelId + ":" + title + ":" + message, false);
+    }
+
+    /**
+     * Key that is unique across tags, for bookkeeping
+     */
+    String uniqueKey() {
+        return tag + ":" + id;
+    }
+}
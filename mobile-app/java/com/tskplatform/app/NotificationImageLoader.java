@@ -0,0 +1,276 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Loads images for rich notifications (marketplace listings, ads, KYC status)
+ * Images are downloaded, decoded and scaled to fit the 2:1 box a notification can show
+ * within a fixed time budget, and kept in a memory and an LRU disk cache shared by all
+ * notifications (written to disk after the notification is posted). If the image can't
+ * be had within the budget the caller gets null and shows a text-only notification
+ * instead of waiting
+ */
+public class NotificationImageLoader {
+    private static final String TAG = "NotificationImages";
+    private static final String CACHE_DIR = "notification-images";
+    private static final long MAX_DISK_SIZE = 10L * 1024 * 1024; // 10 MB
+    private static final int MEMORY_SIZE = 8 * 1024 * 1024; // 8 MB of bitmaps, room for a couple at full width
+    private static final long MAX_DOWNLOAD_SIZE = 5L * 1024 * 1024;
+    private static final long TIME_BUDGET = 2500; // The notification is never delayed longer than this
+    private static final int MAX_WIDTH = 1440;
+
+    private static NotificationImageLoader instance;
+
+    private final File cacheDir;
+    private final int targetWidth;
+    private final int targetHeight;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize = 0;
+    private final ExecutorService loadExecutor = Executors.newFixedThreadPool(2);
+    private final ExecutorService storeExecutor = Executors.newSingleThreadExecutor();
+    private final LruCache<String, Bitmap> memoryCache = new LruCache<String, Bitmap>(MEMORY_SIZE) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount();
+        }
+    };
+
+    private NotificationImageLoader(Context context) {
+        cacheDir = new File(context.getCacheDir(), CACHE_DIR);
+        cacheDir.mkdirs();
+        targetWidth = Math.min(context.getResources().getDisplayMetrics().widthPixels, MAX_WIDTH);
+        targetHeight = targetWidth / 2; // BigPictureStyle crops to about 2:1
+        loadEntries();
+    }
+
+    public static synchronized NotificationImageLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new NotificationImageLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Rebuild the LRU index from disk, least recently used first
+     */
+    private synchronized void loadEntries() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+                continue;
+            }
+            entries.put(file.getName(), file.length());
+            totalSize += file.length();
+        }
+    }
+
+    /**
+     * Get an image for a notification, blocking for at most TIME_BUDGET (call off the main thread)
+     * The budget covers the download, decoding and scaling; a load that runs over keeps
+     * going in the background so the next notification with the same image has it
+     *
+     * @return The downsampled image, or null to show the notification without it
+     */
+    public Bitmap load(String url) {
+        Uri uri = url != null ? Uri.parse(url) : null;
+        if (uri == null || !"https".equals(uri.getScheme())) {
+            return null;
+        }
+
+        String key = ApiResponseCache.sha1(url);
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        long start = System.currentTimeMillis();
+        Future<Bitmap> task = loadExecutor.submit(() -> fetch(url, key));
+        try {
+            bitmap = task.get(TIME_BUDGET, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            bitmap = null;
+        } catch (Exception e) {
+            Log.w(TAG, "Error loading notification image " + url, e);
+            bitmap = null;
+        }
+        Log.d(TAG, (bitmap != null ? "Loaded " : "Gave up on ") + url + " in " +
+            (System.currentTimeMillis() - start) + " ms");
+        return bitmap;
+    }
+
+    /**
+     * Load from disk or the network and keep the result in memory
+     */
+    private Bitmap fetch(String url, String key) {
+        Bitmap bitmap = loadFromDisk(key);
+        if (bitmap == null) {
+            bitmap = download(url, key);
+        }
+        if (bitmap != null) {
+            memoryCache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    private Bitmap loadFromDisk(String key) {
+        File file = new File(cacheDir, key);
+        synchronized (this) {
+            if (entries.get(key) == null) {
+                return null;
+            }
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return BitmapFactory.decodeFile(file.getPath());
+    }
+
+    /**
+     * Download and downsample an image; it is written to disk in the background
+     */
+    private Bitmap download(String url, String key) {
+        OkHttpClient client = TSKPlatformApp.getInstance().getHttpClient().newBuilder()
+            .callTimeout(TIME_BUDGET, TimeUnit.MILLISECONDS)
+            .build();
+
+        byte[] data;
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null || body.contentLength() > MAX_DOWNLOAD_SIZE) {
+                return null;
+            }
+            data = readLimited(body.byteStream());
+            if (data == null) {
+                return null;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Error downloading notification image " + url, e);
+            return null;
+        }
+
+        Bitmap bitmap = decodeSampled(data);
+        if (bitmap != null) {
+            // Compressing and writing must not hold up the notification
+            final Bitmap stored = bitmap;
+            storeExecutor.execute(() -> store(key, stored));
+        }
+        return bitmap;
+    }
+
+    private static byte[] readLimited(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            if (out.size() > MAX_DOWNLOAD_SIZE) {
+                return null;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode at the largest power-of-two sample size that still covers the size the image
+     * has when fitted into the notification's box, then scale down to exactly that size
+     * (sampling alone can leave it up to twice as large)
+     */
+    private Bitmap decodeSampled(byte[] data) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // Fit both dimensions, so a tall image can't decode into a huge bitmap
+        float scale = Math.min(1f, Math.min(targetWidth / (float) options.outWidth,
+            targetHeight / (float) options.outHeight));
+        int width = Math.max(1, Math.round(options.outWidth * scale));
+        int height = Math.max(1, Math.round(options.outHeight * scale));
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width && options.outHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (bitmap == null || (bitmap.getWidth() <= width && bitmap.getHeight() <= height)) {
+            return bitmap;
+        }
+
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    /**
+     * Write the downsampled image to disk (not the original) and trim the cache
+     */
+    private void store(String key, Bitmap bitmap) {
+        File file = new File(cacheDir, key);
+        File temp = new File(cacheDir, key + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            // JPEG has no alpha channel, so transparent images (logos, badges) stay PNG
+            bitmap.compress(bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG, 85, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Error caching notification image", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+
+        synchronized (this) {
+            Long previous = entries.put(key, file.length());
+            totalSize += file.length() - (previous != null ? previous : 0);
+            trimToSize();
+        }
+    }
+
+    private synchronized void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalSize > MAX_DISK_SIZE && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            new File(cacheDir, eldest.getKey()).delete();
+            totalSize -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+}
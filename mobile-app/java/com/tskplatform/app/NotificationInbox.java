@@ -0,0 +1,388 @@
+package com.tskplatform.app;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * On-device inbox of received push notifications
+ * Every push is stored here, including those that arrive while the page is not loaded,
+ * and a native unread counter replaces unread-count polling. Read marks are queued
+ * and flushed to the server in batches; a failed flush is retried by a WorkManager job
+ * with backoff
+ */
+public class NotificationInbox extends SQLiteOpenHelper {
+    private static final String TAG = "NotificationInbox";
+    private static final String DATABASE_NAME = "tsk_inbox.db";
+    private static final int DATABASE_VERSION = 1;
+    private static final String API_ENDPOINT = MainActivity.WEB_APP_URL + "api/notifications";
+    private static final String MARK_ALL = "*";
+    private static final int MAX_ENTRIES = 500;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final long FLUSH_DELAY = 2000; // Collect read marks for 2 seconds before sending
+    private static final String RETRY_WORK_NAME = "inbox-read-marks";
+
+    private static NotificationInbox instance;
+
+    private final Context context;
+    private final AtomicInteger unreadCount = new AtomicInteger(-1);
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private NotificationInbox(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context.getApplicationContext();
+
+        // Pushes are written from the ":push" process while the app reads from the main one
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    public static synchronized NotificationInbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new NotificationInbox(context);
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE inbox (" +
+            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+            "server_id TEXT UNIQUE, " +
+            "type TEXT, " +
+            "title TEXT, " +
+            "message TEXT, " +
+            "deep_link TEXT, " +
+            "data TEXT, " +
+            "received_at INTEGER NOT NULL, " +
+            "read INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE INDEX inbox_read ON inbox (read)");
+        db.execSQL("CREATE TABLE pending_reads (" +
+            "server_id TEXT PRIMARY KEY, " +
+            "queued_at INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // No migrations yet
+    }
+
+    /**
+     * Store a received push
+     *
+     * @return The inbox ID, or -1 if the server notification was already stored
+     */
+    public long add(String serverId, String type, String title, String message, String deepLink, Map<String, String> data) {
+        ContentValues values = new ContentValues();
+        values.put("server_id", serverId);
+        values.put("type", type);
+        values.put("title", title);
+        values.put("message", message);
+        values.put("deep_link", deepLink);
+        values.put("data", data != null ? new JSONObject(data).toString() : null);
+        values.put("received_at", System.currentTimeMillis());
+
+        SQLiteDatabase db = getWritableDatabase();
+        long id = db.insertWithOnConflict("inbox", null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        if (id == -1) {
+            return -1;
+        }
+
+        // Keep the inbox bounded
+        db.execSQL("DELETE FROM inbox WHERE id NOT IN (SELECT id FROM inbox ORDER BY id DESC LIMIT " + MAX_ENTRIES + ")");
+        unreadCount.set(-1);
+        return id;
+    }
+
+    /**
+     * Another process changed the database; recount on next use
+     */
+    public void onExternalChange() {
+        unreadCount.set(-1);
+    }
+
+    /**
+     * Get the number of unread notifications (counted once, then kept in memory)
+     */
+    public int getUnreadCount() {
+        int count = unreadCount.get();
+        if (count < 0) {
+            try (Cursor cursor = getReadableDatabase().rawQuery("SELECT COUNT(*) FROM inbox WHERE read = 0", null)) {
+                count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+            }
+            unreadCount.set(count);
+        }
+        return count;
+    }
+
+    /**
+     * Get a page of notifications, newest first
+     *
+     * @param beforeId Only return entries older than this ID (0 for the first page)
+     * @param limit    Maximum number of entries
+     */
+    public JSONArray getPage(long beforeId, int limit) {
+        JSONArray page = new JSONArray();
+        String where = beforeId > 0 ? "id < " + beforeId : null;
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        try (Cursor cursor = getReadableDatabase().query("inbox", null, where, null, null, null,
+                "id DESC", String.valueOf(pageSize))) {
+            while (cursor.moveToNext()) {
+                JSONObject entry = new JSONObject();
+                entry.put("id", cursor.getLong(cursor.getColumnIndexOrThrow("id")));
+                entry.put("serverId", cursor.getString(cursor.getColumnIndexOrThrow("server_id")));
+                entry.put("type", cursor.getString(cursor.getColumnIndexOrThrow("type")));
+                entry.put("title", cursor.getString(cursor.getColumnIndexOrThrow("title")));
+                entry.put("message", cursor.getString(cursor.getColumnIndexOrThrow("message")));
+                entry.put("deepLink", cursor.getString(cursor.getColumnIndexOrThrow("deep_link")));
+                String data = cursor.getString(cursor.getColumnIndexOrThrow("data"));
+                entry.put("data", data != null ? new JSONObject(data) : JSONObject.NULL);
+                entry.put("receivedAt", cursor.getLong(cursor.getColumnIndexOrThrow("received_at")));
+                entry.put("read", cursor.getInt(cursor.getColumnIndexOrThrow("read")) == 1);
+                page.put(entry);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error reading inbox page", e);
+        }
+        return page;
+    }
+
+    /**
+     * Mark one notification as read and queue the server update
+     */
+    public void markRead(long id) {
+        SQLiteDatabase db = getWritableDatabase();
+        String serverId = null;
+        try (Cursor cursor = db.rawQuery("SELECT server_id FROM inbox WHERE id = ? AND read = 0",
+                new String[]{String.valueOf(id)})) {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            serverId = cursor.getString(0);
+        }
+
+        ContentValues read = new ContentValues();
+        read.put("read", 1);
+        db.update("inbox", read, "id = ?", new String[]{String.valueOf(id)});
+        unreadCount.set(-1);
+
+        if (serverId != null) {
+            queueRead(db, serverId);
+        }
+    }
+
+    /**
+     * Mark everything as read; replaces any queued single reads with one mark-all call
+     */
+    public void markAllRead() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues read = new ContentValues();
+            read.put("read", 1);
+            db.update("inbox", read, "read = 0", null);
+            db.delete("pending_reads", null, null);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        unreadCount.set(0);
+        queueRead(db, MARK_ALL);
+    }
+
+    /**
+     * Delete all stored notifications and queued reads (used on logout)
+     */
+    public void clear() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete("inbox", null, null);
+        db.delete("pending_reads", null, null);
+        unreadCount.set(0);
+    }
+
+    private void queueRead(SQLiteDatabase db, String serverId) {
+        ContentValues pending = new ContentValues();
+        pending.put("server_id", serverId);
+        pending.put("queued_at", System.currentTimeMillis());
+        db.insertWithOnConflict("pending_reads", null, pending, SQLiteDatabase.CONFLICT_REPLACE);
+        scheduleFlush();
+    }
+
+    /**
+     * Flush queued read marks after a short delay, so bursts go out together
+     */
+    public synchronized void scheduleFlush() {
+        if (scheduledFlush != null && !scheduledFlush.isDone()) {
+            return;
+        }
+        scheduledFlush = flushExecutor.schedule(() -> {
+            if (!flushReads()) {
+                scheduleRetry();
+            }
+        }, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Hand what is left to a WorkManager job that retries with backoff until it is sent
+     */
+    private void scheduleRetry() {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(FlushWorker.class)
+            .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
+            .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(RETRY_WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Send queued read marks to the server; failed ones stay queued for the next flush
+     *
+     * @return true if nothing is left queued
+     */
+    boolean flushReads() {
+        SQLiteDatabase db = getWritableDatabase();
+        List<String> queued = new ArrayList<>();
+        try (Cursor cursor = db.query("pending_reads", new String[]{"server_id"}, null, null, null, null, "queued_at")) {
+            while (cursor.moveToNext()) {
+                queued.add(cursor.getString(0));
+            }
+        }
+        if (queued.isEmpty()) {
+            return true;
+        }
+
+        // A queued mark-all covers every single read
+        if (queued.contains(MARK_ALL)) {
+            if (sendRead(API_ENDPOINT + "/mark-all-read")) {
+                db.delete("pending_reads", null, null);
+                onReadsSent();
+                return true;
+            }
+            return false;
+        }
+
+        int sent = 0;
+        for (String serverId : queued) {
+            if (!sendRead(API_ENDPOINT + "/" + serverId + "/read")) {
+                break;
+            }
+            db.delete("pending_reads", "server_id = ?", new String[]{serverId});
+            sent++;
+        }
+        Log.d(TAG, "Flushed " + sent + " of " + queued.size() + " read marks");
+        if (sent > 0) {
+            onReadsSent();
+        }
+        return sent == queued.size();
+    }
+
+    /**
+     * The server's unread count changed, so the natively cached one is out of date
+     */
+    private void onReadsSent() {
+        TSKPlatformApp.getInstance().getApiCache().invalidate();
+    }
+
+    /**
+     * @return true if the read mark is done (accepted, or rejected for good)
+     */
+    private boolean sendRead(String url) {
+        Request.Builder builder = new Request.Builder()
+            .url(url)
+            .put(RequestBody.create(MediaType.parse("application/json"), "{}"));
+        NativeSession.applyTo(builder, url);
+
+        try (Response response = TSKPlatformApp.getInstance().getHttpClient().newCall(builder.build()).execute()) {
+            // 403/404: the notification is gone or not ours, retrying won't help
+            return response.isSuccessful() || response.code() == 403 || response.code() == 404;
+        } catch (Exception e) {
+            Log.w(TAG, "Error sending read mark to " + url, e);
+            return false;
+        }
+    }
+
+    /**
+     * JavaScript interface for the notification inbox
+     */
+    public class InboxInterface {
+        /**
+         * Get the number of unread notifications
+         */
+        @JavascriptInterface
+        public int getUnreadCount() {
+            return NotificationInbox.this.getUnreadCount();
+        }
+
+        /**
+         * Get a page of notifications as a JSON array, newest first
+         */
+        @JavascriptInterface
+        public String getNotifications(long beforeId, int limit) {
+            return getPage(beforeId, limit).toString();
+        }
+
+        /**
+         * Mark a notification as read
+         */
+        @JavascriptInterface
+        public void markAsRead(long id) {
+            markRead(id);
+        }
+
+        /**
+         * Mark all notifications as read
+         */
+        @JavascriptInterface
+        public void markAllAsRead() {
+            markAllRead();
+        }
+    }
+
+    /**
+     * Retries a failed flush of read marks in the background
+     */
+    public static class FlushWorker extends Worker {
+
+        public FlushWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+            super(context, params);
+        }
+
+        @NonNull
+        @Override
+        public Result doWork() {
+            return getInstance(getApplicationContext()).flushReads() ? Result.success() : Result.retry();
+        }
+    }
+}
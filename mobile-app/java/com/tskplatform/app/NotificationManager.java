@@ -1,10 +1,8 @@
 package com.tskplatform.app;
 
-import android.app.NotificationChannel;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Color;
 import android.media.RingtoneManager;
 import android.net.Uri;
 import android.os.Build;
@@ -20,60 +18,28 @@ public class NotificationManager {
     private static final String TAG = "NotificationManager";
     
     // Notification channel IDs
-    private static final String CHANNEL_ID_MINING = "tsk_mining";
-    private static final String CHANNEL_ID_CHAT = "tsk_chat";
-    private static final String CHANNEL_ID_ALERTS = "tsk_alerts";
+    private static final String CHANNEL_ID_MINING = NotificationChannelRegistry.CHANNEL_MINING;
+    private static final String CHANNEL_ID_CHAT = NotificationChannelRegistry.CHANNEL_CHAT;
+    private static final String CHANNEL_ID_ALERTS = NotificationChannelRegistry.CHANNEL_ALERTS;
     
     private final Context context;
     
     public NotificationManager(Context context) {
         this.context = context;
-        createNotificationChannels();
+        NotificationChannelRegistry.ensureRegistered(context);
     }
     
     /**
-     * Create the notification channels (required for Android 8.0+)
+     * Check if notifications are enabled for the app
      */
-    private void createNotificationChannels() {
+    public boolean areNotificationsEnabled() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             android.app.NotificationManager notificationManager = 
                 (android.app.NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            
-            // Mining rewards channel
-            NotificationChannel miningChannel = new NotificationChannel(
-                CHANNEL_ID_MINING,
-                "Mining Rewards",
-                android.app.NotificationManager.IMPORTANCE_HIGH
-            );
-            miningChannel.setDescription("Notifications for TSK mining rewards");
-            miningChannel.enableLights(true);
-            miningChannel.setLightColor(Color.BLUE);
-            miningChannel.enableVibration(true);
-            notificationManager.createNotificationChannel(miningChannel);
-            
-            // Chat messages channel
-            NotificationChannel chatChannel = new NotificationChannel(
-                CHANNEL_ID_CHAT,
-                "Chat Messages",
-                android.app.NotificationManager.IMPORTANCE_HIGH
-            );
-            chatChannel.setDescription("Notifications for chat messages");
-            chatChannel.enableLights(true);
-            chatChannel.setLightColor(Color.GREEN);
-            chatChannel.enableVibration(true);
-            notificationManager.createNotificationChannel(chatChannel);
-            
-            // General alerts channel
-            NotificationChannel alertsChannel = new NotificationChannel(
-                CHANNEL_ID_ALERTS,
-                "General Alerts",
-                android.app.NotificationManager.IMPORTANCE_DEFAULT
-            );
-            alertsChannel.setDescription("General system notifications and alerts");
-            alertsChannel.enableLights(true);
-            alertsChannel.setLightColor(Color.RED);
-            alertsChannel.enableVibration(true);
-            notificationManager.createNotificationChannel(alertsChannel);
+            return notificationManager.areNotificationsEnabled();
+        } else {
+            // On older Android versions, assume notifications are enabled
+            return true;
         }
     }
     
@@ -86,14 +52,7 @@ public class NotificationManager {
          */
         @JavascriptInterface
         public boolean areNotificationsEnabled() {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                android.app.NotificationManager notificationManager = 
-                    (android.app.NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-                return notificationManager.areNotificationsEnabled();
-            } else {
-                // On older Android versions, assume notifications are enabled
-                return true;
-            }
+            return NotificationManager.this.areNotificationsEnabled();
         }
         
         /**
@@ -138,7 +97,7 @@ public class NotificationManager {
                 message = "You've earned " + amount + " TSK";
             }
             
-            showNotification(CHANNEL_ID_MINING, title, message, deepLink, R.drawable.ic_mining);
+            showNotification(CHANNEL_ID_MINING, title, message, deepLink, R.drawable.ic_mining, amount);
         }
         
         /**
@@ -147,7 +106,7 @@ public class NotificationManager {
         @JavascriptInterface
         public void showChatMessageNotification(String sender, String message, String deepLink) {
             String title = "Message from " + sender;
-            showNotification(CHANNEL_ID_CHAT, title, message, deepLink, R.drawable.ic_chat);
+            showNotification(CHANNEL_ID_CHAT, title, message, deepLink, R.drawable.ic_chat, 0);
         }
         
         /**
@@ -155,17 +114,17 @@ public class NotificationManager {
          */
         @JavascriptInterface
         public void showSystemNotification(String title, String message, String deepLink) {
-            showNotification(CHANNEL_ID_ALERTS, title, message, deepLink, R.drawable.ic_notification);
+            showNotification(CHANNEL_ID_ALERTS, title, message, deepLink, R.drawable.ic_notification, 0);
         }
     }
     
     /**
      * Show a notification with the specified parameters
      */
-    private void showNotification(String channelId, String title, String message, String deepLink, int iconResId) {
+    private void showNotification(String channelId, String title, String message, String deepLink, int iconResId, double amount) {
         try {
-            // Ensure notification channels are created for Android O and above
-            createNotificationChannels();
+            // Ensure notification channels are registered (once per process)
+            NotificationChannelRegistry.ensureRegistered(context);
             
             // Validate parameters
             if (title == null || title.isEmpty()) {
@@ -185,11 +144,11 @@ public class NotificationManager {
                 intent.putExtra("deepLink", deepLink);
             }
             
-            // Create a PendingIntent with unique request code
-            int requestCode = Math.abs((int) System.currentTimeMillis());
+            // Identical content maps to the same notification; its ID doubles as the request code
+            NotificationIdentity identity = NotificationIdentity.forContent(channelId, title, message);
             PendingIntent pendingIntent = PendingIntent.getActivity(
                 context,
-                requestCode,
+                identity.id,
                 intent,
                 PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT
             );
@@ -209,17 +168,9 @@ public class NotificationManager {
                 .setContentIntent(pendingIntent)
                 .setPriority(NotificationCompat.PRIORITY_HIGH);
             
-            // Get the notification manager
-            android.app.NotificationManager notificationManager = 
-                (android.app.NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            
-            if (notificationManager != null) {
-                // Generate a unique notification ID based on timestamp and message hash
-                int notificationId = Math.abs(("tsk:" + channelId + ":" + title.hashCode() + ":" + System.currentTimeMillis()).hashCode());
-                
-                // Show the notification
-                notificationManager.notify(notificationId, notificationBuilder.build());
-            }
+            // Show the notification, or fold it into the channel summary during a burst
+            NotificationCoalescer.getInstance(context).post(identity, notificationBuilder,
+                new NotificationCoalescer.Entry(channelId, title, message, deepLink, iconResId, amount));
         } catch (Exception e) {
             android.util.Log.e("NotificationManager", "Error showing notification", e);
         }
@@ -0,0 +1,157 @@
+package com.tskplatform.app;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks whether notifications can actually be shown on this device
+ * The app-level switch (and notification permission) and each channel's enablement are
+ * checked when the app resumes and when a push arrives, against the last state seen,
+ * which is persisted. A change is reported to the server with the device registration
+ * after a short debounce, so several toggles in a row are one call and the server can
+ * stop sending to devices that will never show anything. The ":push" process only hands
+ * a changed state to the main process, which does the comparison and the report
+ */
+public final class NotificationStateReporter {
+    private static final String TAG = "NotificationState";
+    private static final String WORK_NAME = "notification-state";
+    private static final String PREFERENCES_NAME = "tsk_notification_state";
+    private static final String KEY_LAST_STATE = "last_state";
+    private static final long DEBOUNCE = 10; // Seconds
+
+    // What the ":push" process last handed to the main process, kept in its own file
+    private static final String PUSH_PREFERENCES_NAME = "tsk_notification_state_push";
+    private static final String KEY_HANDED_OFF_AT = "handed_off_at";
+    private static final String HANDOFF_WORK = "notification-state-handoff";
+    private static final long HANDOFF_INTERVAL = 24 * 60 * 60 * 1000; // Hand the same state over at most daily
+
+    private NotificationStateReporter() {
+    }
+
+    /**
+     * Get the current state: {"enabled": bool, "channels": {channelId: bool}}
+     */
+    static JSONObject snapshot(Context context) {
+        boolean appEnabled = NotificationManagerCompat.from(context).areNotificationsEnabled();
+        JSONObject channels = new JSONObject();
+        JSONObject state = new JSONObject();
+        try {
+            for (NotificationChannelRegistry.Definition definition : NotificationChannelRegistry.CHANNELS) {
+                channels.put(definition.id, appEnabled && isChannelEnabled(context, definition.id));
+            }
+            state.put("enabled", appEnabled);
+            state.put("channels", channels);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building notification state", e);
+        }
+        return state;
+    }
+
+    private static boolean isChannelEnabled(Context context, String channelId) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return true;
+        }
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        NotificationChannel channel = manager != null ? manager.getNotificationChannel(channelId) : null;
+        // A channel that doesn't exist yet is created with its default importance
+        return channel == null || channel.getImportance() != NotificationManager.IMPORTANCE_NONE;
+    }
+
+    /**
+     * Check the state and, if it changed since the last check, schedule a report
+     * (on resume, and for each push)
+     */
+    public static void check(Context context) {
+        String state = snapshot(context).toString();
+        if (!TSKPlatformApp.isMainProcess(context)) {
+            handOff(context, state);
+            return;
+        }
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        synchronized (NotificationStateReporter.class) {
+            if (state.equals(prefs.getString(KEY_LAST_STATE, null))) {
+                return;
+            }
+            prefs.edit().putString(KEY_LAST_STATE, state).apply();
+        }
+
+        // Each change pushes the report back, so a burst of toggles is sent once
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(ReportWorker.class)
+            .setInitialDelay(DEBOUNCE, TimeUnit.SECONDS)
+            .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    /**
+     * Ask the main process to check the state, unless this process already handed the same
+     * state over lately. The main process's persisted state can't be read reliably from here,
+     * and the daily repeat covers the main process having seen other states in between
+     */
+    private static void handOff(Context context, String state) {
+        SharedPreferences prefs = context.getSharedPreferences(PUSH_PREFERENCES_NAME, Context.MODE_PRIVATE);
+        long now = System.currentTimeMillis();
+        synchronized (NotificationStateReporter.class) {
+            if (state.equals(prefs.getString(KEY_LAST_STATE, null))
+                    && now - prefs.getLong(KEY_HANDED_OFF_AT, 0) < HANDOFF_INTERVAL) {
+                return;
+            }
+            prefs.edit().putString(KEY_LAST_STATE, state).putLong(KEY_HANDED_OFF_AT, now).apply();
+        }
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(CheckWorker.class).build();
+        WorkManager.getInstance(context).enqueueUniqueWork(HANDOFF_WORK, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    /**
+     * Runs in the main process to check the state for the ":push" process
+     */
+    public static class CheckWorker extends Worker {
+
+        public CheckWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+            super(context, params);
+        }
+
+        @NonNull
+        @Override
+        public Result doWork() {
+            check(getApplicationContext());
+            return Result.success();
+        }
+    }
+
+    /**
+     * Runs in the main process and queues the registration again if the state changed
+     * since it was last sent
+     */
+    public static class ReportWorker extends Worker {
+
+        public ReportWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+            super(context, params);
+        }
+
+        @NonNull
+        @Override
+        public Result doWork() {
+            DeviceRegistrationWorker.refresh(getApplicationContext());
+            return Result.success();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.tskplatform.app;
+
+import android.net.Uri;
+import android.util.Log;
+import android.view.Choreographer;
+import android.webkit.WebView;
+
+import androidx.annotation.NonNull;
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebMessagePortCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+
+/**
+ * Native-to-page event channel over a WebMessagePort
+ * Events are JSON encoded and every event posted during one frame is delivered as a
+ * single batch. The page acknowledges each batch; while a batch is unacknowledged
+ * (the page is busy) new events wait in a bounded queue and go out together afterwards.
+ *
+ * On the page each event is dispatched as a "tsk:push" event and, for compatibility,
+ * passed to window.handlePushNotification(type, title, message, deepLink)
+ */
+public class PageEventChannel {
+    private static final String TAG = "PageEventChannel";
+    private static final String ORIGIN = "https://" + MainActivity.APP_HOST;
+    private static final String INIT_MESSAGE = "tsk-events";
+    private static final int MAX_QUEUED_EVENTS = 100;
+
+    // Receives the port, dispatches each batch and acknowledges it
+    private static final String JS_RECEIVER =
+        "(function() {" +
+        "  if (window.__tskEventChannel) return;" +
+        "  window.__tskEventChannel = true;" +
+        "  window.addEventListener('message', function(e) {" +
+        "    if (e.data !== '" + INIT_MESSAGE + "' || !e.ports || !e.ports[0]) return;" +
+        "    var port = e.ports[0];" +
+        "    port.onmessage = function(m) {" +
+        "      var batch = JSON.parse(m.data);" +
+        "      batch.events.forEach(function(ev) {" +
+        "        try {" +
+        "          window.dispatchEvent(new CustomEvent('tsk:push', { detail: ev }));" +
+        "          if (window.handlePushNotification) {" +
+        "            window.handlePushNotification(ev.type, ev.title || '', ev.message || '', ev.deepLink || '');" +
+        "          }" +
+        "        } catch (err) { console.error(err); }" +
+        "      });" +
+        "      port.postMessage(JSON.stringify({ ack: batch.seq }));" +
+        "    };" +
+        "  });" +
+        "})();";
+
+    private final WebView webView;
+    private final boolean supported;
+    private final ArrayDeque<JSONObject> queue = new ArrayDeque<>();
+    private WebMessagePortCompat port;
+    private long sequence = 0;
+    private long awaitingAck = -1;
+    private boolean flushScheduled = false;
+    private boolean scriptInstalled = false;
+    private long droppedEvents = 0;
+
+    public PageEventChannel(WebView webView) {
+        this.webView = webView;
+        this.supported = WebViewFeature.isFeatureSupported(WebViewFeature.CREATE_WEB_MESSAGE_CHANNEL)
+            && WebViewFeature.isFeatureSupported(WebViewFeature.POST_WEB_MESSAGE)
+            && WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_PORT_SET_MESSAGE_CALLBACK);
+    }
+
+    /**
+     * Register the page-side receiver (main thread, before loading the page)
+     */
+    public void install() {
+        if (supported && WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+            WebViewCompat.addDocumentStartJavaScript(webView, JS_RECEIVER, Collections.singleton(ORIGIN));
+            scriptInstalled = true;
+        }
+    }
+
+    /**
+     * The old document and its port are going away (main thread)
+     */
+    public void onPageStarted() {
+        closePort();
+    }
+
+    /**
+     * Hand a fresh port to the loaded page and send anything queued (main thread)
+     * Same-document navigations finish without starting, so the previous port is closed
+     * here as well
+     */
+    public void onPageFinished() {
+        closePort();
+        if (!supported) {
+            scheduleFlush();
+            return;
+        }
+
+        if (!scriptInstalled) {
+            webView.evaluateJavascript(JS_RECEIVER, null);
+        }
+
+        WebMessagePortCompat[] ports = WebViewCompat.createWebMessageChannel(webView);
+        port = ports[0];
+        port.setWebMessageCallback(new WebMessagePortCompat.WebMessageCallbackCompat() {
+            @Override
+            public void onMessage(@NonNull WebMessagePortCompat source, WebMessageCompat message) {
+                onAck(message.getData());
+            }
+        });
+        WebViewCompat.postWebMessage(webView,
+            new WebMessageCompat(INIT_MESSAGE, new WebMessagePortCompat[]{ports[1]}), Uri.parse(ORIGIN));
+
+        scheduleFlush();
+    }
+
+    private void closePort() {
+        if (port != null) {
+            port.close();
+            port = null;
+        }
+        awaitingAck = -1;
+    }
+
+    /**
+     * Queue an event for the page (main thread)
+     */
+    public void post(JSONObject event) {
+        if (queue.size() >= MAX_QUEUED_EVENTS) {
+            // Oldest events are the least relevant once the page catches up
+            queue.pollFirst();
+            droppedEvents++;
+            Log.w(TAG, "Page event queue full, dropped " + droppedEvents + " events so far");
+        }
+        queue.addLast(event);
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled || queue.isEmpty()) {
+            return;
+        }
+        flushScheduled = true;
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos -> flush());
+    }
+
+    /**
+     * Send everything queued during this frame as one batch, unless the page is still busy
+     */
+    private void flush() {
+        flushScheduled = false;
+        if (queue.isEmpty() || awaitingAck >= 0) {
+            return;
+        }
+
+        JSONArray events = new JSONArray();
+        while (!queue.isEmpty()) {
+            events.put(queue.pollFirst());
+        }
+
+        JSONObject batch = new JSONObject();
+        try {
+            batch.put("seq", ++sequence);
+            batch.put("events", events);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error encoding page events", e);
+            return;
+        }
+
+        if (port != null) {
+            awaitingAck = sequence;
+            port.postMessage(new WebMessageCompat(batch.toString()));
+        } else if (!supported) {
+            // No message ports on this WebView: the JSON literal is still safely encoded
+            webView.evaluateJavascript(
+                "(function(batch) { batch.events.forEach(function(ev) {" +
+                "  window.dispatchEvent(new CustomEvent('tsk:push', { detail: ev }));" +
+                "  if (window.handlePushNotification) {" +
+                "    window.handlePushNotification(ev.type, ev.title || '', ev.message || '', ev.deepLink || '');" +
+                "  }" +
+                "}); })(" + batch + ");", null);
+        } else {
+            // Port not connected yet; put the events back for onPageFinished
+            for (int i = events.length() - 1; i >= 0; i--) {
+                queue.addFirst(events.optJSONObject(i));
+            }
+        }
+    }
+
+    /**
+     * The page processed a batch; send whatever accumulated meanwhile
+     */
+    private void onAck(String data) {
+        try {
+            long ack = new JSONObject(data).getLong("ack");
+            if (ack == awaitingAck) {
+                awaitingAck = -1;
+                scheduleFlush();
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Unexpected message from page: " + data);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.tskplatform.app;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A received push message, published on the EventBus for screens that are showing
+ */
+public class PushEvent {
+    private static final String TAG = "PushEvent";
+    private static final Set<String> CORE_KEYS = new HashSet<>(Arrays.asList(
+        "type", "title", "message", "deepLink", "inboxId", "receivedAt"));
+
+    public final String type;
+    public final String title;
+    public final String message;
+    public final String deepLink;
+    public final long inboxId;
+    public final long receivedAt;
+    private final Map<String, String> extras = new HashMap<>();
+
+    public PushEvent(String type, String title, String message, String deepLink, long inboxId) {
+        this(type, title, message, deepLink, inboxId, System.currentTimeMillis());
+    }
+
+    private PushEvent(String type, String title, String message, String deepLink, long inboxId, long receivedAt) {
+        this.type = type;
+        this.title = title;
+        this.message = message;
+        this.deepLink = deepLink;
+        this.inboxId = inboxId;
+        this.receivedAt = receivedAt;
+    }
+
+    /**
+     * Decode an event encoded with toJson() (e.g. handed over from the push process)
+     */
+    public static PushEvent fromJson(JSONObject json) {
+        PushEvent event = new PushEvent(json.optString("type", null), json.optString("title", null),
+            json.optString("message", null), json.optString("deepLink", null), json.optLong("inboxId", -1),
+            json.optLong("receivedAt", System.currentTimeMillis()));
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!CORE_KEYS.contains(key)) {
+                event.putExtra(key, json.optString(key, null));
+            }
+        }
+        return event;
+    }
+
+    /**
+     * Attach a type-specific value (amount, streakDay, sender...)
+     */
+    public PushEvent putExtra(String key, String value) {
+        if (value != null) {
+            extras.put(key, value);
+        }
+        return this;
+    }
+
+    public String getExtra(String key) {
+        return extras.get(key);
+    }
+
+    /**
+     * Encode the event for the page
+     */
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("type", type);
+            json.put("title", title);
+            json.put("message", message);
+            json.put("deepLink", deepLink);
+            if (inboxId != -1) {
+                json.put("inboxId", inboxId);
+            }
+            json.put("receivedAt", receivedAt);
+            for (Map.Entry<String, String> extra : extras.entrySet()) {
+                json.put(extra.getKey(), extra.getValue());
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error encoding push event", e);
+        }
+        return json;
+    }
+}
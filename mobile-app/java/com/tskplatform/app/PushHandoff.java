@@ -0,0 +1,69 @@
+package com.tskplatform.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Hands received pushes from the ":push" process to the main process
+ * FCM messages are handled in a separate lightweight process, so screens in the main
+ * process can't see them on the EventBus directly. When the main process is running it
+ * has a receiver registered (package-scoped and not exported); when it isn't, nothing is
+ * sent and the push waits in the inbox
+ */
+public final class PushHandoff {
+    private static final String TAG = "PushHandoff";
+    private static final String ACTION_PUSH = "com.tskplatform.app.PUSH_HANDOFF";
+    private static final String EXTRA_EVENT = "event";
+
+    private PushHandoff() {
+    }
+
+    /**
+     * Deliver an event to the EventBus of the main process
+     */
+    public static void deliver(Context context, PushEvent event) {
+        if (TSKPlatformApp.isMainProcess(context)) {
+            EventBus.getInstance().publish(event);
+            return;
+        }
+
+        Intent intent = new Intent(ACTION_PUSH);
+        intent.setPackage(context.getPackageName());
+        intent.putExtra(EXTRA_EVENT, event.toJson().toString());
+        context.sendBroadcast(intent);
+    }
+
+    /**
+     * Receive handed-over events (main process, once)
+     */
+    public static void registerReceiver(Context context) {
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                String json = intent.getStringExtra(EXTRA_EVENT);
+                if (json == null) {
+                    return;
+                }
+                try {
+                    PushEvent event = PushEvent.fromJson(new JSONObject(json));
+
+                    // The push process wrote to the inbox; our cached unread count is out of date
+                    NotificationInbox.getInstance(context).onExternalChange();
+                    EventBus.getInstance().publish(event);
+                } catch (JSONException e) {
+                    Log.w(TAG, "Malformed push handoff", e);
+                }
+            }
+        };
+        ContextCompat.registerReceiver(context, receiver, new IntentFilter(ACTION_PUSH),
+            ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+}
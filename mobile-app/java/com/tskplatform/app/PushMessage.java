@@ -0,0 +1,120 @@
+package com.tskplatform.app;
+
+import com.google.firebase.messaging.RemoteMessage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A parsed FCM message as it moves through the PushPipeline
+ */
+public class PushMessage {
+    public static final String TYPE_GENERAL = "general";
+
+    // Keys parsed into fields; everything else is passed through as extras
+    private static final Set<String> CORE_KEYS = new HashSet<>(Arrays.asList(
+        "type", "title", "message", "body", "deepLink", "notificationId", "id", "collapseKey"));
+
+    // Types that describe current state; a newer message replaces the older notification
+    private static final Set<String> STATE_TYPES = new HashSet<>(Arrays.asList("balance", "mining_status"));
+
+    public final String serverId;
+    public final String messageId;
+    public final String collapseKey;
+    public final String type;
+    public final String title;
+    public final String message;
+    public final String deepLink;
+    public final Map<String, String> data;
+    public final long receivedAt;
+    long inboxId = -1;
+
+    PushMessage(String serverId, String messageId, String collapseKey, String type, String title,
+                String message, String deepLink, Map<String, String> data, long receivedAt) {
+        this.serverId = serverId;
+        this.messageId = messageId;
+        this.collapseKey = collapseKey;
+        this.type = type;
+        this.title = title;
+        this.message = message;
+        this.deepLink = deepLink;
+        this.data = Collections.unmodifiableMap(data);
+        this.receivedAt = receivedAt;
+    }
+
+    /**
+     * Parse a RemoteMessage; a notification payload fills in whatever the data payload lacks
+     */
+    public static PushMessage parse(RemoteMessage remoteMessage, long receivedAt) {
+        Map<String, String> data = new HashMap<>(remoteMessage.getData());
+        String title = data.get("title");
+        String message = data.get("message") != null ? data.get("message") : data.get("body");
+
+        RemoteMessage.Notification notification = remoteMessage.getNotification();
+        if (notification != null) {
+            if (title == null) {
+                title = notification.getTitle();
+            }
+            if (message == null) {
+                message = notification.getBody();
+            }
+            if (data.get("imageUrl") == null && notification.getImageUrl() != null) {
+                data.put("imageUrl", notification.getImageUrl().toString());
+            }
+        }
+
+        String serverId = data.get("notificationId") != null ? data.get("notificationId") : data.get("id");
+        return new PushMessage(serverId, remoteMessage.getMessageId(), parseCollapseKey(remoteMessage, data),
+            data.get("type"), title, message, data.get("deepLink"), data, receivedAt);
+    }
+
+    private static String parseCollapseKey(RemoteMessage remoteMessage, Map<String, String> data) {
+        if (data.get("collapseKey") != null) {
+            return data.get("collapseKey");
+        }
+        if (STATE_TYPES.contains(data.get("type"))) {
+            return data.get("type");
+        }
+
+        // FCM reports the package name when the sender did not set a collapse key
+        String collapseKey = remoteMessage.getCollapseKey();
+        if (collapseKey == null || collapseKey.equals("com.tskplatform.app") || collapseKey.equals("do_not_collapse")) {
+            return null;
+        }
+        return collapseKey;
+    }
+
+    /**
+     * Copy with the fields the validate stage fills in or cleans up
+     */
+    PushMessage withDefaults(String type, String title, String message, String deepLink) {
+        PushMessage copy = new PushMessage(serverId, messageId, collapseKey, type, title, message, deepLink, data, receivedAt);
+        copy.inboxId = inboxId;
+        return copy;
+    }
+
+    public String get(String key) {
+        return data.get(key);
+    }
+
+    public long getInboxId() {
+        return inboxId;
+    }
+
+    /**
+     * Event published to screens in this process
+     */
+    public PushEvent toEvent() {
+        PushEvent event = new PushEvent(type, title, message, deepLink, inboxId);
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            if (!CORE_KEYS.contains(entry.getKey())) {
+                event.putExtra(entry.getKey(), entry.getValue());
+            }
+        }
+        return event;
+    }
+}
@@ -0,0 +1,217 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.firebase.messaging.RemoteMessage;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Processing pipeline for incoming FCM messages
+ * Each message goes through parse → validate → dedup → route → render → follow-up → deliver.
+ * Rendering is done by the handler registered for the message type (or the default
+ * handler), so new types are added with register() instead of editing the pipeline.
+ * Every stage is timed and slow messages are logged
+ */
+public class PushPipeline {
+    private static final String TAG = "PushPipeline";
+    private static final long SLOW_MESSAGE_MS = 50;
+    private static final int MAX_TITLE_LENGTH = 200;
+    private static final int MAX_MESSAGE_LENGTH = 2000;
+    private static final int RECENT_IDS = 200;
+
+    /**
+     * Renders one type of message, e.g. by showing a notification
+     */
+    public interface MessageHandler {
+        void handle(PushMessage message);
+    }
+
+    private final Context context;
+    private final Map<String, MessageHandler> handlers = new ConcurrentHashMap<>();
+    private MessageHandler defaultHandler;
+
+    // FCM message IDs and server IDs seen lately; FCM may deliver the same message more than once
+    private static final Map<String, Boolean> recentIds = new LinkedHashMap<String, Boolean>(RECENT_IDS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_IDS;
+        }
+    };
+
+    public PushPipeline(Context context, MessageHandler defaultHandler) {
+        this.context = context.getApplicationContext();
+        this.defaultHandler = defaultHandler;
+    }
+
+    /**
+     * Register the handler for a message type
+     */
+    public PushPipeline register(String type, MessageHandler handler) {
+        handlers.put(type, handler);
+        return this;
+    }
+
+    /**
+     * Run a received message through the pipeline
+     */
+    public void process(RemoteMessage remoteMessage) {
+        StageTimer timer = new StageTimer();
+
+        PushMessage message = PushMessage.parse(remoteMessage, System.currentTimeMillis());
+        timer.mark("parse");
+
+        message = validate(message);
+        timer.mark("validate");
+
+        // A push with no text that only carries follow-up work (sync, prefetch) is silent
+        boolean silent = isEmpty(message.title) && isEmpty(message.message) && hasFollowUps(message);
+
+        if (!markSeen(message)) {
+            Log.d(TAG, "Dropping recently seen message " +
+                (message.serverId != null ? message.serverId : message.messageId));
+            return;
+        }
+
+        // The inbox catches duplicates older than the recent-ID cache: a server ID is only stored once
+        if (!silent) {
+            long inboxId = NotificationInbox.getInstance(context)
+                .add(message.serverId, message.type, message.title, message.message, message.deepLink, message.data);
+            if (inboxId == -1 && message.serverId != null) {
+                Log.d(TAG, "Dropping duplicate message " + message.serverId);
+                return;
+            }
+            message.inboxId = inboxId;
+        }
+        timer.mark("dedup");
+
+        MessageHandler handler = handlers.get(message.type);
+        if (handler == null) {
+            handler = defaultHandler;
+        }
+        timer.mark("route");
+
+        // Handlers fill in a default title and text for messages without them
+        if (!silent) {
+            try {
+                handler.handle(message);
+            } catch (Exception e) {
+                Log.e(TAG, "Handler for " + message.type + " failed", e);
+            }
+        }
+        timer.mark("render");
+
+        enqueueFollowUps(message);
+        NotificationStateReporter.check(context);
+        timer.mark("follow-up");
+
+        PushHandoff.deliver(context, message.toEvent());
+        timer.mark("deliver");
+
+        timer.log(message.type);
+    }
+
+    /**
+     * Hand slow follow-up work to the background lane instead of doing it here
+     * "prefetch": comma-separated API routes the deep link will need; "sync": "inbox" to sync read marks,
+     * "topics" to re-read the topic list
+     */
+    private void enqueueFollowUps(PushMessage message) {
+        String messageKey = message.serverId != null ? message.serverId
+            : message.messageId != null ? message.messageId : String.valueOf(message.receivedAt);
+
+        String prefetch = message.get("prefetch");
+        if (prefetch != null) {
+            for (String route : prefetch.split(",")) {
+                if (!route.trim().isEmpty()) {
+                    PushWorker.enqueue(context, PushWorker.TASK_PREFETCH, messageKey, route.trim(), message.receivedAt);
+                }
+            }
+        }
+        if ("inbox".equals(message.get("sync"))) {
+            PushWorker.enqueue(context, PushWorker.TASK_SYNC_INBOX, messageKey, "", message.receivedAt);
+        }
+        if ("topics".equals(message.get("sync"))) {
+            TopicSubscriptionWorker.requestSync(context);
+        }
+    }
+
+    /**
+     * Remember the message's IDs
+     *
+     * @return false if either ID was seen recently
+     */
+    private boolean markSeen(PushMessage message) {
+        synchronized (recentIds) {
+            String fcmKey = message.messageId != null ? "fcm:" + message.messageId : null;
+            String serverKey = message.serverId != null ? "server:" + message.serverId : null;
+            if ((fcmKey != null && recentIds.containsKey(fcmKey)) || (serverKey != null && recentIds.containsKey(serverKey))) {
+                return false;
+            }
+            if (fcmKey != null) {
+                recentIds.put(fcmKey, Boolean.TRUE);
+            }
+            if (serverKey != null) {
+                recentIds.put(serverKey, Boolean.TRUE);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Fill in the type, bound the text and keep deep links to in-app paths
+     */
+    private PushMessage validate(PushMessage message) {
+        String type = isEmpty(message.type) ? PushMessage.TYPE_GENERAL : message.type;
+        String deepLink = message.deepLink;
+        if (deepLink != null && (deepLink.contains("://") || deepLink.startsWith("//"))) {
+            // Only in-app paths; full URLs are not navigated to from a push
+            deepLink = null;
+        } else if (deepLink != null && !deepLink.startsWith("/")) {
+            deepLink = "/" + deepLink;
+        }
+        return message.withDefaults(type, truncate(message.title, MAX_TITLE_LENGTH),
+            truncate(message.message, MAX_MESSAGE_LENGTH), deepLink);
+    }
+
+    private static boolean hasFollowUps(PushMessage message) {
+        return message.get("sync") != null || message.get("prefetch") != null;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    /**
+     * Records how long each pipeline stage took
+     */
+    private static class StageTimer {
+        private final long start = System.nanoTime();
+        private final StringBuilder stages = new StringBuilder();
+        private long last = start;
+
+        void mark(String stage) {
+            long now = System.nanoTime();
+            stages.append(String.format(Locale.US, " %s=%.2fms", stage, (now - last) / 1e6));
+            last = now;
+        }
+
+        void log(String type) {
+            long totalMs = (last - start) / 1000000;
+            String summary = "Processed " + type + " in " + totalMs + " ms:" + stages;
+            if (totalMs >= SLOW_MESSAGE_MS) {
+                Log.w(TAG, summary);
+            } else {
+                Log.d(TAG, summary);
+            }
+        }
+    }
+}
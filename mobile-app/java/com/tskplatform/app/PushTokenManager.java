@@ -0,0 +1,195 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.messaging.FirebaseMessaging;
+
+/**
+ * Owns the FCM token for the main process
+ * The token is cached in SharedPreferences and only fetched from Firebase when the cached
+ * one is older than TOKEN_TTL; rotations arrive through onNewToken instead. Concurrent
+ * fetches share one Firebase call, and whenever the token changes the device is
+ * re-registered with the server in the background and a TokenChanged event is published
+ */
+public class PushTokenManager {
+    private static final String TAG = "PushTokenManager";
+    private static final String PREFERENCES_NAME = "tsk_firebase_prefs";
+    private static final String KEY_TOKEN = "firebase_token";
+    private static final String KEY_TIMESTAMP = "token_timestamp";
+    private static final long TOKEN_TTL = 7L * 24 * 60 * 60 * 1000; // 7 days
+    private static final String HANDOFF_WORK = "push-token-handoff";
+
+    private static PushTokenManager instance;
+
+    private final Context context;
+    private String token;
+    private long fetchedAt;
+    private Task<String> inFlight;
+
+    /**
+     * Published on the EventBus when the token changes (null when it was deleted)
+     */
+    public static final class TokenChanged {
+        public final String token;
+
+        TokenChanged(String token) {
+            this.token = token;
+        }
+    }
+
+    private PushTokenManager(Context context) {
+        this.context = context;
+        SharedPreferences prefs = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        token = prefs.getString(KEY_TOKEN, null);
+        fetchedAt = prefs.getLong(KEY_TIMESTAMP, 0);
+    }
+
+    public static synchronized PushTokenManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new PushTokenManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Hand a new token from FirebaseMessagingService.onNewToken to the main process
+     */
+    public static void onNewToken(Context context, String token) {
+        if (TSKPlatformApp.isMainProcess(context)) {
+            getInstance(context).accept(token);
+            return;
+        }
+
+        // The main process wouldn't see a SharedPreferences write made here, so the token
+        // goes through WorkManager's database and is accepted where the worker runs
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(HandoffWorker.class)
+            .setInputData(new Data.Builder().putString(KEY_TOKEN, token).build())
+            .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(HANDOFF_WORK, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    /**
+     * Get the cached token, or null if none has been fetched yet
+     */
+    public synchronized String getToken() {
+        return token;
+    }
+
+    /**
+     * Whether the cached token is recent enough to use without asking Firebase
+     */
+    public synchronized boolean isFresh() {
+        return token != null && System.currentTimeMillis() - fetchedAt < TOKEN_TTL;
+    }
+
+    /**
+     * Fetch the token only if the cached one is missing or stale
+     */
+    public void ensureFresh() {
+        if (isFresh()) {
+            Log.d(TAG, "Cached FCM token is fresh, skipping fetch");
+            return;
+        }
+        fetch();
+    }
+
+    /**
+     * Fetch the token from Firebase, joining a fetch already in flight
+     */
+    public synchronized Task<String> fetch() {
+        if (inFlight != null && !inFlight.isComplete()) {
+            return inFlight;
+        }
+
+        inFlight = FirebaseMessaging.getInstance().getToken();
+        inFlight.addOnCompleteListener(task -> {
+            if (task.isSuccessful() && task.getResult() != null) {
+                accept(task.getResult());
+            } else {
+                Log.w(TAG, "Fetching FCM registration token failed", task.getException());
+            }
+        });
+        return inFlight;
+    }
+
+    /**
+     * Store a token from Firebase and, if it changed, re-register the device
+     */
+    void accept(String newToken) {
+        boolean changed;
+        synchronized (this) {
+            changed = !newToken.equals(token);
+            token = newToken;
+            fetchedAt = System.currentTimeMillis();
+        }
+
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+            .edit()
+            .putString(KEY_TOKEN, newToken)
+            .putLong(KEY_TIMESTAMP, fetchedAt)
+            .apply();
+
+        if (changed) {
+            Log.d(TAG, "FCM token changed: " + newToken.substring(0, Math.min(8, newToken.length())) + "...");
+            DeviceRegistrationWorker.onTokenRotated(context, newToken);
+            TopicSubscriptionWorker.requestSync(context);
+            EventBus.getInstance().publish(new TokenChanged(newToken));
+        }
+    }
+
+    /**
+     * Delete the token locally and from Firebase
+     */
+    public void delete() {
+        synchronized (this) {
+            token = null;
+            fetchedAt = 0;
+        }
+
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+            .edit()
+            .remove(KEY_TOKEN)
+            .remove(KEY_TIMESTAMP)
+            .apply();
+
+        FirebaseMessaging.getInstance().deleteToken().addOnCompleteListener(task -> {
+            if (!task.isSuccessful()) {
+                Log.w(TAG, "Deleting FCM token failed", task.getException());
+                return;
+            }
+            Log.d(TAG, "FCM token deleted from Firebase");
+        });
+        EventBus.getInstance().publish(new TokenChanged(null));
+    }
+
+    /**
+     * Runs in the main process to accept a token received by the ":push" process
+     */
+    public static class HandoffWorker extends Worker {
+
+        public HandoffWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+            super(context, params);
+        }
+
+        @NonNull
+        @Override
+        public Result doWork() {
+            String token = getInputData().getString(KEY_TOKEN);
+            if (token != null && !token.isEmpty()) {
+                getInstance(getApplicationContext()).accept(token);
+            }
+            return Result.success();
+        }
+    }
+}
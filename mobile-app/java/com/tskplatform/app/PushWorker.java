@@ -0,0 +1,180 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.ForegroundInfo;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expedited background lane for push follow-up work that needs I/O
+ * onMessageReceived only has a few seconds, so anything slow (prefetching the data behind
+ * a deep link, syncing the inbox) is enqueued here instead: persisted by WorkManager,
+ * run as expedited work once the network is available, retried with backoff, and unique
+ * per message so each job runs once. The time from push receipt to job completion is
+ * recorded for every job
+ */
+public class PushWorker extends Worker {
+    private static final String TAG = "PushWorker";
+    private static final String PREFERENCES_NAME = "tsk_push_work";
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int FOREGROUND_ID = "tsk_push_work".hashCode();
+
+    public static final String TASK_PREFETCH = "prefetch";
+    public static final String TASK_SYNC_INBOX = "sync_inbox";
+
+    private static final String KEY_TASK = "task";
+    private static final String KEY_ARGUMENT = "argument";
+    private static final String KEY_RECEIVED_AT = "received_at";
+
+    public PushWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Queue a follow-up job for a message
+     *
+     * @param messageKey Unique key of the message, so a redelivered push doesn't queue the job twice
+     * @param argument   Task-specific argument (e.g. the route to prefetch)
+     * @param receivedAt When the push was received
+     */
+    public static void enqueue(Context context, String task, String messageKey, String argument, long receivedAt) {
+        Data input = new Data.Builder()
+            .putString(KEY_TASK, task)
+            .putString(KEY_ARGUMENT, argument)
+            .putLong(KEY_RECEIVED_AT, receivedAt)
+            .build();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(PushWorker.class)
+            .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+            .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 10, TimeUnit.SECONDS)
+            .setInputData(input)
+            .addTag(TAG)
+            .build();
+
+        WorkManager.getInstance(context)
+            .enqueueUniqueWork("push:" + task + ":" + messageKey + ":" + argument, ExistingWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String task = getInputData().getString(KEY_TASK);
+        String argument = getInputData().getString(KEY_ARGUMENT);
+
+        boolean done;
+        try {
+            if (TASK_PREFETCH.equals(task)) {
+                done = prefetch(argument);
+            } else if (TASK_SYNC_INBOX.equals(task)) {
+                done = NotificationInbox.getInstance(getApplicationContext()).flushReads();
+            } else {
+                Log.w(TAG, "Unknown push task: " + task);
+                return Result.failure();
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Push task " + task + " failed", e);
+            done = false;
+        }
+
+        if (done) {
+            recordCompletion(task, true);
+            return Result.success();
+        }
+        if (getRunAttemptCount() + 1 >= MAX_ATTEMPTS) {
+            recordCompletion(task, false);
+            return Result.failure();
+        }
+        return Result.retry();
+    }
+
+    /**
+     * Load an allow-listed API route into the native cache, so opening the deep link is instant
+     */
+    private boolean prefetch(String path) throws Exception {
+        if (path == null || !ApiResponseCache.isCachedRoute(Uri.parse(path).getPath())) {
+            Log.w(TAG, "Not prefetching uncached route " + path);
+            return true;
+        }
+        ApiResponseCache.Entry entry = TSKPlatformApp.getInstance().getApiCache()
+            .prefetch(MainActivity.WEB_APP_URL + path.substring(1));
+        // Server errors are worth retrying, client errors are not
+        return entry.status < 500;
+    }
+
+    /**
+     * Expedited work runs as a foreground service before Android 12, which needs a notification
+     */
+    @NonNull
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        NotificationChannelRegistry.ensureRegistered(getApplicationContext());
+        return new ForegroundInfo(FOREGROUND_ID,
+            new NotificationCompat.Builder(getApplicationContext(), NotificationChannelRegistry.CHANNEL_ALERTS)
+                .setSmallIcon(R.drawable.ic_notification)
+                .setContentTitle("TSK Platform")
+                .setContentText("Updating…")
+                .setPriority(NotificationCompat.PRIORITY_MIN)
+                .setSilent(true)
+                .build());
+    }
+
+    /**
+     * Record how long the job took from push receipt to completion
+     */
+    private void recordCompletion(String task, boolean succeeded) {
+        long latency = System.currentTimeMillis() - getInputData().getLong(KEY_RECEIVED_AT, System.currentTimeMillis());
+        Log.d(TAG, "Push task " + task + (succeeded ? " completed" : " gave up") + " " + latency +
+            " ms after receipt (attempt " + (getRunAttemptCount() + 1) + ")");
+
+        SharedPreferences prefs = getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        synchronized (PushWorker.class) {
+            prefs.edit()
+                .putInt(succeeded ? "completed" : "failed", prefs.getInt(succeeded ? "completed" : "failed", 0) + 1)
+                .putLong("last_latency_ms", latency)
+                .putLong("max_latency_ms", Math.max(latency, prefs.getLong("max_latency_ms", 0)))
+                .putLong("total_latency_ms", prefs.getLong("total_latency_ms", 0) + latency)
+                .apply();
+        }
+    }
+
+    /**
+     * Get the job counters and receipt-to-completion latencies
+     */
+    public static JSONObject getStats(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        JSONObject stats = new JSONObject();
+        try {
+            int completed = prefs.getInt("completed", 0);
+            int failed = prefs.getInt("failed", 0);
+            stats.put("completed", completed);
+            stats.put("failed", failed);
+            stats.put("lastLatencyMs", prefs.getLong("last_latency_ms", 0));
+            stats.put("maxLatencyMs", prefs.getLong("max_latency_ms", 0));
+            int total = completed + failed;
+            stats.put("avgLatencyMs", total > 0 ? prefs.getLong("total_latency_ms", 0) / total : 0);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building push work stats", e);
+        }
+        return stats;
+    }
+}
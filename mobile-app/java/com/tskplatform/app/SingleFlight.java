@@ -0,0 +1,88 @@
+package com.tskplatform.app;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses identical concurrent calls into one
+ * The first caller for a key runs the call; callers that arrive while it is in
+ * flight wait for and share its result instead of starting their own
+ */
+public class SingleFlight<T> {
+
+    /**
+     * A call whose result can be shared between callers
+     */
+    public interface Call<T> {
+        T execute() throws IOException;
+    }
+
+    private final Map<String, FutureTask<T>> inFlight = new HashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+
+    /**
+     * Run the call for a key, or join the one already in flight
+     */
+    public T execute(String key, Call<T> call) throws IOException {
+        FutureTask<T> task;
+        boolean leader = false;
+
+        synchronized (inFlight) {
+            task = inFlight.get(key);
+            if (task == null) {
+                task = new FutureTask<>(call::execute);
+                inFlight.put(key, task);
+                leader = true;
+            }
+        }
+
+        if (leader) {
+            executed.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                synchronized (inFlight) {
+                    inFlight.remove(key);
+                }
+            }
+        } else {
+            collapsed.incrementAndGet();
+        }
+
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + key);
+        }
+    }
+
+    /**
+     * Number of calls that actually ran
+     */
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    /**
+     * Number of calls that joined one already in flight
+     */
+    public long getCollapsedCount() {
+        return collapsed.get();
+    }
+}
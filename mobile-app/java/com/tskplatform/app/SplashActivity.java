@@ -2,49 +2,60 @@ package com.tskplatform.app;
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import androidx.appcompat.app.AppCompatActivity;
 
 /**
  * SplashActivity is the entry point of the application
- * It displays a splash screen for a short duration before launching MainActivity
+ * It launches MainActivity immediately, which keeps the splash on screen until the
+ * WebView first paints
  */
 public class SplashActivity extends AppCompatActivity {
-    private static final int SPLASH_DURATION = 1500; // 1.5 seconds
+    // Tells MainActivity to cover the WebView with the splash until it is ready
+    static final String EXTRA_SPLASH_OVERLAY = "com.tskplatform.app.SPLASH_OVERLAY";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupMetrics.markLaunch();
         
+        // Load the WebView provider and preconnect to the app hosts while the splash is up
+        WebViewPrewarmer.start(this);
+        
+        // Fetch the data the first screen needs in parallel with the HTML load
+        BootPrefetcher.start();
+
         // No need to set content view as we're using a theme with a splash background
         // defined in styles.xml as @style/SplashTheme
-        
-        // Post a delayed handler to launch the main activity
-        new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                // Create an intent to start MainActivity
-                Intent intent = new Intent(SplashActivity.this, MainActivity.class);
-                
-                // Pass any received intent extras
-                if (getIntent() != null && getIntent().getExtras() != null) {
-                    intent.putExtras(getIntent().getExtras());
-                }
-                
-                // If we were launched from a deep link, pass the data
-                if (getIntent() != null && getIntent().getData() != null) {
-                    intent.setData(getIntent().getData());
-                }
-                
-                startActivity(intent);
-                
-                // Apply a fade transition
-                overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
-                
-                // Close the splash activity
-                finish();
-            }
-        }, SPLASH_DURATION);
+
+        // Hand over to MainActivity immediately so WebView creation and the
+        // network load start while the splash is still visible
+        launchMainActivity();
+    }
+
+    /**
+     * Start MainActivity, forwarding any extras and deep link data
+     */
+    private void launchMainActivity() {
+        // Create an intent to start MainActivity
+        Intent intent = new Intent(SplashActivity.this, MainActivity.class);
+
+        // Pass any received intent extras
+        if (getIntent() != null && getIntent().getExtras() != null) {
+            intent.putExtras(getIntent().getExtras());
+        }
+
+        // If we were launched from a deep link, pass the data
+        if (getIntent() != null && getIntent().getData() != null) {
+            intent.setData(getIntent().getData());
+        }
+
+        intent.putExtra(EXTRA_SPLASH_OVERLAY, true);
+        startActivity(intent);
+
+        // MainActivity draws the same splash background, so avoid a visible transition
+        overridePendingTransition(0, 0);
+
+        // Close the splash activity
+        finish();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Records cold-start timing marks for the TSK Platform app
+ * Time-to-first-paint (from the splash being created until it is dismissed by the page)
+ * is persisted so it can be tracked across launches. It is measured from the splash
+ * rather than process start, because workers often start the process in the background
+ * long before the user opens the app
+ */
+public final class StartupMetrics {
+    private static final String TAG = "StartupMetrics";
+    private static final String PREFERENCES_NAME = "tsk_startup_metrics";
+
+    private static long processStartUptime = 0;
+    private static long launchUptime = 0;
+    private static boolean firstPaintRecorded = false;
+    private static final JSONObject marks = new JSONObject();
+
+    private StartupMetrics() {
+    }
+
+    /**
+     * Mark the start of the process (called from TSKPlatformApp.onCreate)
+     */
+    public static synchronized void markProcessStart() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            // Includes the time spent in Zygote fork and bindApplication
+            processStartUptime = Process.getStartUptimeMillis();
+        } else {
+            processStartUptime = SystemClock.uptimeMillis();
+        }
+        mark("app_created");
+    }
+
+    /**
+     * Mark the user launching the app (called from SplashActivity.onCreate)
+     */
+    public static synchronized void markLaunch() {
+        if (launchUptime == 0) {
+            launchUptime = SystemClock.uptimeMillis();
+        }
+        mark("splash_created");
+    }
+
+    /**
+     * Record a named startup mark relative to process start
+     */
+    public static synchronized void mark(String name) {
+        try {
+            if (!marks.has(name)) {
+                marks.put(name, sinceProcessStart());
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error recording startup mark: " + name, e);
+        }
+    }
+
+    /**
+     * Record the time-to-first-paint of the first launch in this process
+     * A splash ended by the timeout or a load error painted nothing, so it is not a sample
+     *
+     * @param context Any context, used to persist the measurement
+     * @param trigger What ended the splash (first_paint, web_ready, timeout, page_finished, error)
+     */
+    public static synchronized void recordFirstPaint(Context context, String trigger) {
+        if (firstPaintRecorded || launchUptime == 0) {
+            return;
+        }
+        firstPaintRecorded = true;
+        if ("timeout".equals(trigger) || "error".equals(trigger)) {
+            Log.i(TAG, "Splash ended by " + trigger + ", not recording time-to-first-paint");
+            return;
+        }
+
+        long elapsed = SystemClock.uptimeMillis() - launchUptime;
+        mark("first_paint");
+
+        SharedPreferences prefs = context.getApplicationContext()
+            .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        prefs.edit()
+            .putLong("ttfp_last", elapsed)
+            .putString("ttfp_trigger", trigger)
+            .putLong("ttfp_sum", prefs.getLong("ttfp_sum", 0) + elapsed)
+            .putInt("ttfp_count", prefs.getInt("ttfp_count", 0) + 1)
+            .apply();
+
+        Log.i(TAG, "Time-to-first-paint: " + elapsed + " ms (trigger=" + trigger + ")");
+    }
+
+    /**
+     * Get the recorded startup marks and persisted time-to-first-paint stats as JSON
+     */
+    public static synchronized String toJson(Context context) {
+        JSONObject result = new JSONObject();
+        SharedPreferences prefs = context.getApplicationContext()
+            .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+
+        try {
+            result.put("marks", new JSONObject(marks.toString()));
+
+            int count = prefs.getInt("ttfp_count", 0);
+            if (count > 0) {
+                JSONObject stats = new JSONObject();
+                stats.put("last", prefs.getLong("ttfp_last", 0));
+                stats.put("lastTrigger", prefs.getString("ttfp_trigger", null));
+                stats.put("average", prefs.getLong("ttfp_sum", 0) / count);
+                stats.put("count", count);
+                result.put("firstPaint", stats);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building startup metrics JSON", e);
+        }
+
+        return result.toString();
+    }
+
+    private static long sinceProcessStart() {
+        if (processStartUptime == 0) {
+            return 0;
+        }
+        return SystemClock.uptimeMillis() - processStartUptime;
+    }
+}
@@ -1,14 +1,11 @@
 package com.tskplatform.app;
 
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Color;
+import android.graphics.Bitmap;
 import android.media.RingtoneManager;
 import android.net.Uri;
-import android.os.Build;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -17,7 +14,6 @@ import androidx.core.app.NotificationCompat;
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
 
-import java.util.Map;
 import java.util.Random;
 
 /**
@@ -27,159 +23,101 @@ public class TSKFirebaseMessagingService extends FirebaseMessagingService {
     private static final String TAG = "FCMService";
     
     // Notification channel IDs
-    private static final String CHANNEL_ID_MINING = "tsk_mining";
-    private static final String CHANNEL_ID_CHAT = "tsk_chat";
-    private static final String CHANNEL_ID_ALERTS = "tsk_alerts";
+    private static final String CHANNEL_ID_MINING = NotificationChannelRegistry.CHANNEL_MINING;
+    private static final String CHANNEL_ID_CHAT = NotificationChannelRegistry.CHANNEL_CHAT;
+    private static final String CHANNEL_ID_ALERTS = NotificationChannelRegistry.CHANNEL_ALERTS;
     
     @Override
     public void onNewToken(@NonNull String token) {
-        Log.d(TAG, "Refreshed FCM token: " + token);
+        Log.d(TAG, "Refreshed FCM token: " + token.substring(0, Math.min(8, token.length())) + "...");
         
-        // Store the new token
-        // This is mainly to handle background token refreshes when app is not actively running
-        // We'll store it in SharedPreferences so it can be retrieved when the app launches
-        try {
-            getApplicationContext()
-                .getSharedPreferences("tsk_firebase_prefs", Context.MODE_PRIVATE)
-                .edit()
-                .putString("firebase_token", token)
-                .putLong("token_timestamp", System.currentTimeMillis())
-                .apply();
-            
-            Log.d(TAG, "Saved new FCM token to SharedPreferences");
-        } catch (Exception e) {
-            Log.e(TAG, "Error saving token to SharedPreferences", e);
-        }
+        // Stored and re-registered with the server by the main process
+        PushTokenManager.onNewToken(this, token);
     }
     
+    private PushPipeline pipeline;
+    
     @Override
-    public void onMessageReceived(@NonNull RemoteMessage remoteMessage) {
-        Log.d(TAG, "From: " + remoteMessage.getFrom());
+    public void onCreate() {
+        super.onCreate();
         
-        // Check if message contains a data payload
-        if (remoteMessage.getData().size() > 0) {
-            Log.d(TAG, "Message data payload: " + remoteMessage.getData());
-            
-            // Handle the data payload
-            handleDataMessage(remoteMessage.getData());
-        }
-        
-        // Check if message contains a notification payload
-        if (remoteMessage.getNotification() != null) {
-            Log.d(TAG, "Message Notification Body: " + remoteMessage.getNotification().getBody());
-            
-            // Handle the notification payload
-            handleNotificationMessage(remoteMessage);
-        }
+        // Message types and the handlers that render them; unknown types get a general notification
+        pipeline = new PushPipeline(this, message ->
+                showGeneralNotification(NotificationIdentity.forMessage(message),
+                    message.title, message.message, message.deepLink, message.get("imageUrl")))
+            .register("mining", message ->
+                showMiningNotification(NotificationIdentity.forMessage(message), message.title, message.message,
+                    message.deepLink, message.get("amount"), message.get("streakDay")))
+            .register("chat", message ->
+                showChatNotification(NotificationIdentity.forMessage(message), message.get("sender"),
+                    message.message, message.deepLink, message.get("senderId"), message.get("groupId")));
     }
     
-    /**
-     * Handle data payload notifications
-     */
-    private void handleDataMessage(Map<String, String> data) {
+    @Override
+    public void onMessageReceived(@NonNull RemoteMessage remoteMessage) {
+        Log.d(TAG, "From: " + remoteMessage.getFrom());
+        
+        // Data and notification payloads are parsed into one message, so it is shown once
         try {
-            String type = data.get("type");
-            String title = data.get("title");
-            String body = data.get("message") != null ? data.get("message") : data.get("body");
-            String deepLink = data.get("deepLink");
-            
-            // Send a broadcast to the app if it's in the foreground
-            Intent intent = new Intent("com.tskplatform.app.FCM_MESSAGE");
-            intent.putExtra("type", type);
-            intent.putExtra("title", title);
-            intent.putExtra("message", body);
-            intent.putExtra("deepLink", deepLink);
-            
-            // Add any additional data based on message type
-            if ("mining".equals(type)) {
-                String amount = data.get("amount");
-                String streakDay = data.get("streakDay");
-                intent.putExtra("amount", amount);
-                intent.putExtra("streakDay", streakDay);
-                
-                // Show a notification for mining rewards
-                showMiningNotification(title, body, deepLink, amount, streakDay);
-            } else if ("chat".equals(type)) {
-                String sender = data.get("sender");
-                intent.putExtra("sender", sender);
-                
-                // Show a notification for chat messages
-                showChatNotification(sender, body, deepLink);
-            } else {
-                // Show a general notification for other types
-                showGeneralNotification(title, body, deepLink);
-            }
-            
-            sendBroadcast(intent);
+            pipeline.process(remoteMessage);
         } catch (Exception e) {
-            Log.e(TAG, "Error handling data message", e);
+            Log.e(TAG, "Error handling message", e);
         }
     }
     
     /**
-     * Handle notification payload notifications
+     * Show a mining reward notification
      */
-    private void handleNotificationMessage(RemoteMessage remoteMessage) {
+    private void showMiningNotification(NotificationIdentity identity, String title, String message, String deepLink, String amount, String streakDay) {
+        double rewardAmount = 0;
         try {
-            String title = remoteMessage.getNotification().getTitle();
-            String body = remoteMessage.getNotification().getBody();
-            String deepLink = "/";
-            
-            // Check if there's a data payload with a deep link
-            if (remoteMessage.getData().containsKey("deepLink")) {
-                deepLink = remoteMessage.getData().get("deepLink");
-            }
-            
-            // Show a general notification
-            showGeneralNotification(title, body, deepLink);
-            
-            // Send a broadcast to the app if it's in the foreground
-            Intent intent = new Intent("com.tskplatform.app.FCM_MESSAGE");
-            intent.putExtra("type", "general");
-            intent.putExtra("title", title);
-            intent.putExtra("message", body);
-            intent.putExtra("deepLink", deepLink);
-            sendBroadcast(intent);
-        } catch (Exception e) {
-            Log.e(TAG, "Error handling notification message", e);
+            rewardAmount = amount != null ? Double.parseDouble(amount) : 0;
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Invalid mining amount: " + amount);
         }
-    }
-    
-    /**
-     * Show a mining reward notification
-     */
-    private void showMiningNotification(String title, String message, String deepLink, String amount, String streakDay) {
+        
+        // Mining can be activated straight from the notification
+        NotificationCompat.Action activate = NotificationActionReceiver.activateMiningAction(
+            this, identity, CHANNEL_ID_MINING, deepLink);
+        
         // Use the mining channel for mining notifications
-        showNotification(CHANNEL_ID_MINING, title, message, deepLink, R.drawable.ic_mining);
+        showNotification(identity, CHANNEL_ID_MINING, title, message, deepLink, R.drawable.ic_mining, rewardAmount, activate, null);
     }
     
     /**
      * Show a chat message notification
      */
-    private void showChatNotification(String sender, String message, String deepLink) {
+    private void showChatNotification(NotificationIdentity identity, String sender, String message, String deepLink,
+                                      String senderId, String groupId) {
         String title = "Message from " + sender;
         
+        // Inline reply, when the message says where the reply should go
+        NotificationCompat.Action reply = NotificationActionReceiver.replyAction(
+            this, identity, CHANNEL_ID_CHAT, deepLink, senderId, groupId);
+        
         // Use the chat channel for chat notifications
-        showNotification(CHANNEL_ID_CHAT, title, message, deepLink, R.drawable.ic_chat);
+        showNotification(identity, CHANNEL_ID_CHAT, title, message, deepLink, R.drawable.ic_chat, 0, reply, null);
     }
     
     /**
      * Show a general system notification
      */
-    private void showGeneralNotification(String title, String message, String deepLink) {
+    private void showGeneralNotification(NotificationIdentity identity, String title, String message, String deepLink,
+                                         String imageUrl) {
         // Use the alerts channel for general notifications
-        showNotification(CHANNEL_ID_ALERTS, title, message, deepLink, R.drawable.ic_notification);
+        showNotification(identity, CHANNEL_ID_ALERTS, title, message, deepLink, R.drawable.ic_notification, 0, null, imageUrl);
     }
     
     /**
      * Show a notification with the given parameters
      */
-    private void showNotification(String channelId, String title, String message, String deepLink, int iconResId) {
+    private void showNotification(NotificationIdentity identity, String channelId, String title, String message, String deepLink, int iconResId, double amount,
+                                  NotificationCompat.Action action, String imageUrl) {
         try {
             Context context = getApplicationContext();
             
-            // Ensure notification channels are created for Android O and above
-            createNotificationChannels(context);
+            // Ensure notification channels are registered (once per process)
+            NotificationChannelRegistry.ensureRegistered(context);
             
             // Validate parameters
             if (title == null || title.isEmpty()) {
@@ -199,11 +137,10 @@ public class TSKFirebaseMessagingService extends FirebaseMessagingService {
                 intent.putExtra("deepLink", deepLink);
             }
             
-            // Create a pending intent with a more reliable unique request code
-            int requestCode = Math.abs(title.hashCode() + message.hashCode() + (int)System.currentTimeMillis());
+            // The notification ID doubles as the request code, so each notification keeps its own intent
             PendingIntent pendingIntent = PendingIntent.getActivity(
                 this,
-                requestCode,
+                identity.id,
                 intent,
                 PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT
             );
@@ -221,66 +158,33 @@ public class TSKFirebaseMessagingService extends FirebaseMessagingService {
                 .setSound(defaultSoundUri)
                 .setVibrate(new long[]{0, 300, 200, 300})
                 .setContentIntent(pendingIntent)
-                .setPriority(NotificationCompat.PRIORITY_HIGH);
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setOnlyAlertOnce(identity.isUpdate); // State updates replace the old notification quietly
             
-            // Get the notification manager
-            NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            if (action != null) {
+                notificationBuilder.addAction(action);
+            }
             
-            if (notificationManager != null) {
-                // Generate a unique notification ID based on content
-                int notificationId = Math.abs(("tsk_fcm:" + channelId + ":" + title.hashCode() + ":" + System.currentTimeMillis()).hashCode());
-                
-                // Show the notification
-                notificationManager.notify(notificationId, notificationBuilder.build());
+            // Listings, ads and KYC updates may carry an image; without it (or if it's slow) stay text-only
+            if (imageUrl != null) {
+                Bitmap image = NotificationImageLoader.getInstance(context).load(imageUrl);
+                if (image != null) {
+                    notificationBuilder
+                        .setLargeIcon(image)
+                        .setStyle(new NotificationCompat.BigPictureStyle()
+                            .bigPicture(image)
+                            .bigLargeIcon((Bitmap) null)
+                            .setSummaryText(message));
+                }
+            }
+            
+            // Show the notification, or fold it into the channel summary during a burst
+            NotificationCoalescer.Entry entry = new NotificationCoalescer.Entry(channelId, title, message, deepLink, iconResId, amount);
+            if (NotificationCoalescer.getInstance(context).post(identity, notificationBuilder, entry)) {
                 Log.d(TAG, "Successfully displayed notification: " + title);
             }
         } catch (Exception e) {
             Log.e(TAG, "Error showing notification", e);
         }
     }
-    
-    /**
-     * Create notification channels for Android 8.0+
-     */
-    private void createNotificationChannels(Context context) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-            
-            // Mining rewards channel
-            NotificationChannel miningChannel = new NotificationChannel(
-                CHANNEL_ID_MINING,
-                "Mining Rewards",
-                NotificationManager.IMPORTANCE_HIGH
-            );
-            miningChannel.setDescription("Notifications for TSK mining rewards");
-            miningChannel.enableLights(true);
-            miningChannel.setLightColor(Color.BLUE);
-            miningChannel.enableVibration(true);
-            notificationManager.createNotificationChannel(miningChannel);
-            
-            // Chat messages channel
-            NotificationChannel chatChannel = new NotificationChannel(
-                CHANNEL_ID_CHAT,
-                "Chat Messages",
-                NotificationManager.IMPORTANCE_HIGH
-            );
-            chatChannel.setDescription("Notifications for chat messages");
-            chatChannel.enableLights(true);
-            chatChannel.setLightColor(Color.GREEN);
-            chatChannel.enableVibration(true);
-            notificationManager.createNotificationChannel(chatChannel);
-            
-            // General alerts channel
-            NotificationChannel alertsChannel = new NotificationChannel(
-                CHANNEL_ID_ALERTS,
-                "General Alerts",
-                NotificationManager.IMPORTANCE_DEFAULT
-            );
-            alertsChannel.setDescription("General system notifications and alerts");
-            alertsChannel.enableLights(true);
-            alertsChannel.setLightColor(Color.RED);
-            alertsChannel.enableVibration(true);
-            notificationManager.createNotificationChannel(alertsChannel);
-        }
-    }
 }
\ No newline at end of file
@@ -1,35 +1,137 @@
 package com.tskplatform.app;
 
+import android.app.ActivityManager;
 import android.app.Application;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Build;
+import android.os.Process;
 import android.webkit.WebStorage;
 
+import androidx.annotation.NonNull;
+import androidx.work.Configuration;
+
+import com.google.firebase.FirebaseApp;
+
+import okhttp3.OkHttpClient;
+
 /**
  * Application class for TSK Platform
  * Handles application-wide settings and preferences
  */
-public class TSKPlatformApp extends Application {
+public class TSKPlatformApp extends Application implements Configuration.Provider {
     private static final String PREFERENCES_NAME = "TSKPlatformPrefs";
     private static final String KEY_DARK_MODE = "dark_mode";
     private static final String KEY_LAST_LOGIN = "last_login";
     private static final String KEY_AUTH_TOKEN = "auth_token";
     
     private static TSKPlatformApp instance;
+    private static Boolean mainProcess;
     private SharedPreferences sharedPreferences;
+    private HttpStack httpStack;
+    private AppShell appShell;
+    private AssetCache assetCache;
+    private ApiResponseCache apiCache;
     
     @Override
     public void onCreate() {
         super.onCreate();
         instance = this;
         sharedPreferences = getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        
+        if (!isMainProcess(this)) {
+            // The ":push" process only renders notifications and writes the inbox.
+            // Firebase's init provider only runs in the main process, so initialize it here
+            FirebaseApp.initializeApp(this);
+            return;
+        }
+        
+        StartupMetrics.markProcessStart();
+        PushHandoff.registerReceiver(this);
     }
     
     public static TSKPlatformApp getInstance() {
         return instance;
     }
     
+    /**
+     * WorkManager configuration; push follow-up work is enqueued from ":push" but runs in the main process
+     */
+    @NonNull
+    @Override
+    public Configuration getWorkManagerConfiguration() {
+        return new Configuration.Builder()
+            .setDefaultProcessName(getPackageName())
+            .build();
+    }
+    
+    /**
+     * Check whether we are running in the main app process (rather than ":push")
+     */
+    public static boolean isMainProcess(Context context) {
+        if (mainProcess == null) {
+            mainProcess = context.getPackageName().equals(getCurrentProcessName(context));
+        }
+        return mainProcess;
+    }
+    
+    private static String getCurrentProcessName(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return Application.getProcessName();
+        }
+        
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null && activityManager.getRunningAppProcesses() != null) {
+            int pid = Process.myPid();
+            for (ActivityManager.RunningAppProcessInfo process : activityManager.getRunningAppProcesses()) {
+                if (process.pid == pid) {
+                    return process.processName;
+                }
+            }
+        }
+        return context.getPackageName();
+    }
+    
+    /**
+     * Get the HTTP client shared by all native networking (pooled connections, DNS, TLS and disk caches)
+     */
+    public synchronized OkHttpClient getHttpClient() {
+        if (httpStack == null) {
+            httpStack = new HttpStack(this);
+        }
+        return httpStack.client();
+    }
+    
+    /**
+     * Get the offline app shell (created on first use so FCM wakeups don't load it)
+     */
+    public synchronized AppShell getAppShell() {
+        if (appShell == null) {
+            appShell = new AppShell(this);
+        }
+        return appShell;
+    }
+    
+    /**
+     * Get the disk cache for hashed web assets
+     */
+    public synchronized AssetCache getAssetCache() {
+        if (assetCache == null) {
+            assetCache = new AssetCache(this);
+        }
+        return assetCache;
+    }
+    
+    /**
+     * Get the native cache for allow-listed API GET requests
+     */
+    public synchronized ApiResponseCache getApiCache() {
+        if (apiCache == null) {
+            apiCache = new ApiResponseCache(this);
+        }
+        return apiCache;
+    }
+    
     /**
      * Check if dark mode is enabled
      */
@@ -88,6 +190,10 @@ public class TSKPlatformApp extends Application {
         // Clear web storage
         WebStorage.getInstance().deleteAllData();
         
+        // Clear cached API responses and the notification inbox
+        getApiCache().clear();
+        NotificationInbox.getInstance(this).clear();
+        
         // Clear cookies (requires additional implementation in MainActivity)
     }
     
@@ -0,0 +1,216 @@
+package com.tskplatform.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.messaging.FirebaseMessaging;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Keeps the device's FCM topic subscriptions in line with the segments it belongs to
+ * (all users, locale, premium tier), so broadcast notifications can be one topic send
+ * instead of one send per device. The topic list comes from the server when it provides
+ * one and is otherwise derived from the signed-in user. Only the difference from the
+ * topics this device is already subscribed to is applied, and a device that isn't
+ * registered for push is subscribed to nothing
+ */
+public class TopicSubscriptionWorker extends Worker {
+    private static final String TAG = "PushTopics";
+    private static final String PREFERENCES_NAME = "tsk_push_topics";
+    private static final String WORK_NAME = "push-topics";
+    private static final long SYNC_INTERVAL = 24 * 60 * 60 * 1000; // 24 hours
+    private static final long CALL_TIMEOUT = 30; // Seconds
+    private static final Pattern VALID_TOPIC = Pattern.compile("[a-zA-Z0-9-_.~%]{1,900}");
+
+    private static final String KEY_SUBSCRIBED = "subscribed";
+    private static final String KEY_TOKEN = "token";
+    private static final String KEY_LAST_SYNC = "last_sync";
+    private static final String KEY_LOCALE = "locale";
+
+    public TopicSubscriptionWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Reconcile the subscriptions in the background (e.g. after registering or a tier change)
+     */
+    public static void requestSync(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(TopicSubscriptionWorker.class)
+            .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 30, TimeUnit.SECONDS)
+            .addTag(TAG)
+            .build();
+
+        // Appended rather than replaced, so a running sync isn't cut off halfway
+        WorkManager.getInstance(context).enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    /**
+     * Reconcile if the last sync was more than SYNC_INTERVAL ago or the locale changed (call on launch)
+     */
+    public static void syncIfStale(Context context) {
+        SharedPreferences prefs = prefs(context);
+        boolean stale = System.currentTimeMillis() - prefs.getLong(KEY_LAST_SYNC, 0) > SYNC_INTERVAL;
+        boolean localeChanged = !currentLocale().equals(prefs.getString(KEY_LOCALE, null));
+        if (stale || localeChanged) {
+            requestSync(context);
+        }
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Set<String> desired;
+        try {
+            desired = DeviceRegistrationWorker.isRegistered(getApplicationContext()) ? loadTopics() : new HashSet<>();
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Error loading push topics", e);
+            return Result.retry();
+        }
+
+        // Subscriptions belong to a token, so after a rotation or deletion they start from nothing
+        String token = PushTokenManager.getInstance(getApplicationContext()).getToken();
+        SharedPreferences prefs = prefs(getApplicationContext());
+        Set<String> subscribed = new HashSet<>();
+        if (token != null && token.equals(prefs.getString(KEY_TOKEN, null))) {
+            subscribed.addAll(prefs.getStringSet(KEY_SUBSCRIBED, new HashSet<>()));
+        }
+
+        try {
+            for (String topic : desired) {
+                if (!subscribed.contains(topic)) {
+                    await(FirebaseMessaging.getInstance().subscribeToTopic(topic));
+                    subscribed.add(topic);
+                    saveSubscribed(prefs, token, subscribed);
+                    Log.d(TAG, "Subscribed to " + topic);
+                }
+            }
+            for (String topic : new HashSet<>(subscribed)) {
+                if (!desired.contains(topic)) {
+                    await(FirebaseMessaging.getInstance().unsubscribeFromTopic(topic));
+                    subscribed.remove(topic);
+                    saveSubscribed(prefs, token, subscribed);
+                    Log.d(TAG, "Unsubscribed from " + topic);
+                }
+            }
+        } catch (Exception e) {
+            // Progress so far is saved, so the retry only applies what's left
+            Log.w(TAG, "Error updating push topics", e);
+            return Result.retry();
+        }
+
+        prefs.edit()
+            .putLong(KEY_LAST_SYNC, System.currentTimeMillis())
+            .putString(KEY_LOCALE, currentLocale())
+            .apply();
+        return Result.success();
+    }
+
+    /**
+     * Get the topics from the server, or derive them from the user if the server has no list
+     */
+    private Set<String> loadTopics() throws IOException, JSONException {
+        JSONObject response = get("api/notifications/topics");
+        if (response != null) {
+            JSONArray topics = response.getJSONArray("topics");
+            Set<String> result = new HashSet<>();
+            for (int i = 0; i < topics.length(); i++) {
+                String topic = topics.optString(i);
+                if (VALID_TOPIC.matcher(topic).matches()) {
+                    result.add(topic);
+                } else {
+                    Log.w(TAG, "Ignoring invalid topic " + topic);
+                }
+            }
+            return result;
+        }
+
+        Set<String> result = new HashSet<>();
+        result.add("all");
+        result.add("android");
+        result.add(topicName("locale", currentLocale()));
+
+        JSONObject user = get("api/user");
+        if (user != null && !user.optString("premiumTier").isEmpty()) {
+            result.add(topicName("tier", user.optString("premiumTier")));
+        }
+        return result;
+    }
+
+    /**
+     * @return The response body, or null if the route doesn't exist or the user isn't signed in
+     */
+    private JSONObject get(String path) throws IOException, JSONException {
+        String url = MainActivity.WEB_APP_URL + path;
+        Request.Builder builder = new Request.Builder().url(url);
+        NativeSession.applyTo(builder, url);
+
+        try (Response response = TSKPlatformApp.getInstance().getHttpClient().newCall(builder.build()).execute()) {
+            if (response.code() == 404 || response.code() == 401) {
+                return null;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("Unexpected response " + response.code() + " for " + path);
+            }
+            // Unknown routes fall through to the web app's index.html
+            MediaType type = response.body().contentType();
+            if (type == null || !"json".equals(type.subtype())) {
+                return null;
+            }
+            return new JSONObject(response.body().string());
+        }
+    }
+
+    private static void await(Task<Void> task) throws Exception {
+        Tasks.await(task, CALL_TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    private static void saveSubscribed(SharedPreferences prefs, String token, Set<String> subscribed) {
+        prefs.edit()
+            .putString(KEY_TOKEN, token)
+            .putStringSet(KEY_SUBSCRIBED, new HashSet<>(subscribed))
+            .apply();
+    }
+
+    /**
+     * Build a valid topic name, e.g. "tier-premium-plus" from ("tier", "Premium Plus")
+     */
+    private static String topicName(String segment, String value) {
+        return segment + "-" + value.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_.~]+", "-");
+    }
+
+    private static String currentLocale() {
+        return Locale.getDefault().getLanguage();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+}
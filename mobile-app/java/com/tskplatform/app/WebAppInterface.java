@@ -82,6 +82,7 @@ public class WebAppInterface {
     @JavascriptInterface
     public void setAuthToken(String token) {
         TSKPlatformApp.getInstance().setAuthToken(token);
+        activity.runOnUiThread(activity::onCapabilitiesChanged);
     }
 
     /**
@@ -90,6 +91,7 @@ public class WebAppInterface {
     @JavascriptInterface
     public void clearAppData() {
         TSKPlatformApp.getInstance().clearAppData();
+        activity.runOnUiThread(activity::onCapabilitiesChanged);
     }
 
     /**
@@ -106,6 +108,7 @@ public class WebAppInterface {
     @JavascriptInterface
     public void setDarkMode(boolean enabled) {
         TSKPlatformApp.getInstance().setDarkMode(enabled);
+        activity.runOnUiThread(activity::onCapabilitiesChanged);
     }
 
     /**
@@ -126,6 +129,46 @@ public class WebAppInterface {
         context.startActivity(Intent.createChooser(shareIntent, "Share via"));
     }
 
+    /**
+     * Signal that the web app has rendered its first screen (ends the splash)
+     */
+    @JavascriptInterface
+    public void notifyAppReady() {
+        activity.runOnUiThread(activity::onWebAppReady);
+    }
+
+    /**
+     * Get cold-start timing marks and time-to-first-paint stats as JSON
+     */
+    @JavascriptInterface
+    public String getStartupMetrics() {
+        return StartupMetrics.toJson(context);
+    }
+
+    /**
+     * Get the API responses prefetched during cold start as JSON, keyed by route
+     */
+    @JavascriptInterface
+    public String getBootData() {
+        return BootPrefetcher.getResults();
+    }
+
+    /**
+     * Get native cache and background push work counters as JSON
+     */
+    @JavascriptInterface
+    public String getCacheStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("assets", TSKPlatformApp.getInstance().getAssetCache().getStats());
+            stats.put("api", TSKPlatformApp.getInstance().getApiCache().getStats());
+            stats.put("pushWork", PushWorker.getStats(activity));
+        } catch (JSONException e) {
+            return "{}";
+        }
+        return stats.toString();
+    }
+
     /**
      * Returns network connection type
      */
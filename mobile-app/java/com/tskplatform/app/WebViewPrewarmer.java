@@ -0,0 +1,109 @@
+package com.tskplatform.app;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebView;
+
+import java.net.InetAddress;
+
+/**
+ * Warms up the WebView ahead of MainActivity
+ * Loads the WebView provider, initializes Chromium and preconnects to the app hosts
+ * while the splash is showing, then hands the warmed WebView to MainActivity
+ */
+public final class WebViewPrewarmer {
+    private static final String TAG = "WebViewPrewarmer";
+
+    private static boolean started = false;
+    private static boolean consumed = false;
+    private static WebView warmWebView;
+    private static MutableContextWrapper warmContext;
+
+    private WebViewPrewarmer() {
+    }
+
+    /**
+     * Start prewarming (must be called on the main thread)
+     * DNS resolution runs in the background right away; the WebView itself is
+     * created once the main thread goes idle after the splash is drawn
+     */
+    public static void start(Context context) {
+        if (started) {
+            return;
+        }
+        started = true;
+        final Context appContext = context.getApplicationContext();
+
+        // Resolve the app hosts off the main thread so the system DNS cache is warm
+        new Thread(() -> {
+            for (String host : MainActivity.ALLOWED_HOSTS) {
+                try {
+                    InetAddress.getAllByName(host);
+                } catch (Exception e) {
+                    Log.w(TAG, "DNS prewarm failed for " + host, e);
+                }
+            }
+        }, "tsk-dns-prewarm").start();
+
+        Looper.myQueue().addIdleHandler(() -> {
+            createWarmWebView(appContext);
+            return false;
+        });
+    }
+
+    /**
+     * Create the WebView and let Chromium open connections to the app hosts
+     */
+    private static void createWarmWebView(Context appContext) {
+        if (consumed) {
+            // MainActivity already started without us
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+
+            // The wrapper lets MainActivity re-parent the WebView to its own context later
+            warmContext = new MutableContextWrapper(appContext);
+            warmWebView = new WebView(warmContext);
+
+            // Preconnect through Chromium's own network stack so the page load reuses the sockets
+            StringBuilder html = new StringBuilder("<html><head>");
+            for (String host : MainActivity.ALLOWED_HOSTS) {
+                html.append("<link rel=\"dns-prefetch\" href=\"https://").append(host).append("\">");
+                html.append("<link rel=\"preconnect\" href=\"https://").append(host).append("\" crossorigin>");
+            }
+            html.append("</head><body></body></html>");
+            warmWebView.loadDataWithBaseURL(null, html.toString(), "text/html", "UTF-8", null);
+
+            StartupMetrics.mark("webview_prewarmed");
+            Log.d(TAG, "WebView prewarmed in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            // Missing or updating WebView provider; MainActivity creates its own WebView
+            Log.e(TAG, "Error prewarming WebView", e);
+            warmWebView = null;
+            warmContext = null;
+        }
+    }
+
+    /**
+     * Take the warmed WebView, re-parented to the given activity
+     *
+     * @return The warmed WebView, or null if prewarming has not finished
+     */
+    public static WebView obtain(Activity activity) {
+        consumed = true;
+        if (warmWebView == null) {
+            return null;
+        }
+
+        WebView webView = warmWebView;
+        warmContext.setBaseContext(activity);
+        warmWebView = null;
+        warmContext = null;
+        return webView;
+    }
+}
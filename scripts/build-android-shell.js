@@ -0,0 +1,95 @@
+// Script to package the built web app as the Android offline app shell
+//
+// Run after `vite build`. Copies the shell files from dist/public into
+// mobile-app/assets/app-shell and writes a versioned app-shell-manifest.json
+// with a SHA-256 per file. The same manifest is written to dist/public/app-shell
+// so the server can serve it to installed apps, which download only changed files.
+// It has its own name so it never collides with the web app's manifest.json.
+
+import fs from 'fs';
+import path from 'path';
+import crypto from 'crypto';
+
+const rootDir = process.cwd();
+const distDir = path.join(rootDir, 'dist', 'public');
+const shellDir = path.join(rootDir, 'mobile-app', 'assets', 'app-shell');
+const MANIFEST_FILE = 'app-shell-manifest.json';
+
+// Static files Vite copies from client/public that index.html references and the shell must work without network
+const PUBLIC_SHELL_FILES = [
+  'favicon.ico',
+  'favicon.svg',
+  'manifest.json',
+  'manifest.webmanifest',
+  'splash.svg',
+  'tsk-logo.svg',
+  'icons',
+];
+
+function listFiles(dir, base = dir) {
+  const files = [];
+  for (const entry of fs.readdirSync(dir, { withFileTypes: true })) {
+    const fullPath = path.join(dir, entry.name);
+    if (entry.isDirectory()) {
+      files.push(...listFiles(fullPath, base));
+    } else {
+      files.push(path.relative(base, fullPath).split(path.sep).join('/'));
+    }
+  }
+  return files;
+}
+
+function sha256(filePath) {
+  return crypto.createHash('sha256').update(fs.readFileSync(filePath)).digest('hex');
+}
+
+function buildAndroidShell() {
+  console.log('Building Android app shell...');
+
+  if (!fs.existsSync(path.join(distDir, 'index.html'))) {
+    console.error(`Could not find ${distDir}/index.html, make sure to build the client first`);
+    process.exit(1);
+  }
+
+  // Shell = the HTML document, the hashed Vite assets and the public files
+  const shellFiles = listFiles(distDir).filter((file) =>
+    file === 'index.html' ||
+    file.startsWith('assets/') ||
+    PUBLIC_SHELL_FILES.some((name) => file === name || file.startsWith(`${name}/`))
+  );
+
+  const files = {};
+  for (const file of shellFiles.sort()) {
+    files[file] = sha256(path.join(distDir, file));
+  }
+
+  const version = crypto
+    .createHash('sha256')
+    .update(Object.entries(files).map(([file, hash]) => `${file}:${hash}`).join('\n'))
+    .digest('hex')
+    .slice(0, 12);
+
+  const manifest = {
+    version,
+    createdAt: Date.now(),
+    files,
+  };
+
+  // Replace the bundled shell
+  fs.rmSync(shellDir, { recursive: true, force: true });
+  for (const file of shellFiles) {
+    const target = path.join(shellDir, file);
+    fs.mkdirSync(path.dirname(target), { recursive: true });
+    fs.copyFileSync(path.join(distDir, file), target);
+  }
+  fs.writeFileSync(path.join(shellDir, MANIFEST_FILE), JSON.stringify(manifest, null, 2));
+
+  // Publish the manifest for background updates
+  const remoteManifestDir = path.join(distDir, 'app-shell');
+  fs.mkdirSync(remoteManifestDir, { recursive: true });
+  fs.writeFileSync(path.join(remoteManifestDir, MANIFEST_FILE), JSON.stringify(manifest, null, 2));
+
+  console.log(`App shell ${version} built with ${shellFiles.length} files`);
+}
+
+buildAndroidShell();
@@ -7346,7 +7346,7 @@ export async function registerRoutes(app: Express): Promise<Server> {
   // Device token registration and management routes
   app.post("/api/notifications/register-device", isAuthenticated, async (req, res) => {
     try {
-      const { token, platform, deviceId } = req.body;
+      const { token, platform, deviceId, notificationsEnabled } = req.body;
       
       if (!token) {
         return res.status(400).json({ message: "Device token is required" });
@@ -7356,12 +7356,13 @@ export async function registerRoutes(app: Express): Promise<Server> {
         return res.status(400).json({ message: "Platform is required" });
       }
       
+      // Devices report when the user turned notifications off; those are kept but not targeted
       const deviceToken = await storage.registerDeviceToken({
         userId: req.user!.id,
         token,
         platform,
         deviceId: deviceId || null,
-        isActive: true
+        isActive: notificationsEnabled !== false
       });
       
       res.status(200).json({ 
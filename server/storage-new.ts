@@ -4026,7 +4026,7 @@ Last updated: March 15, 2025`,
           userId: tokenData.userId,
           platform: tokenData.platform,
           deviceId: tokenData.deviceId,
-          isActive: true,
+          isActive: tokenData.isActive ?? true,
           lastUsedAt: new Date()
         })
         .where(eq(deviceTokens.id, existingToken.id))
@@ -4041,7 +4041,7 @@ Last updated: March 15, 2025`,
           token: tokenData.token,
           platform: tokenData.platform,
           deviceId: tokenData.deviceId,
-          isActive: true,
+          isActive: tokenData.isActive ?? true,
           lastUsedAt: new Date()
         })
         .returning();